@@ -0,0 +1,124 @@
+package com.vibedrochka.utils;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.BoundingBox;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Grid detection on a wall of empty item frames in a stand-in world. The world answers
+ * entity queries by filtering a plain list, so the result covers the detector's own work
+ * and only approximates the server's entity lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemFrameDetectorBenchmark {
+
+    /**
+     * Width and height of the detected grid, in blocks
+     */
+    @Param({"4", "32", "128"})
+    public int size;
+
+    private final ItemFrameDetector detector = new ItemFrameDetector();
+    private ItemFrame topLeft;
+
+    @Setup
+    public void setup() {
+        List<Entity> entities = new ArrayList<>();
+        World world = world(entities);
+        ItemStack empty = new ItemStack(Material.AIR);
+
+        // A south-facing wall one frame larger than the grid on every side; right is +X, down is -Y
+        int top = size;
+        for (int y = top + 1; y >= -1; y--) {
+            for (int x = -1; x <= size; x++) {
+                ItemFrame frame = itemFrame(new Location(world, x + 0.5, y + 0.5, 0.03125), BlockFace.SOUTH, empty);
+                entities.add(frame);
+                if (x == 0 && y == top) {
+                    topLeft = frame;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public List<List<ItemFrame>> detectFrameGrid() {
+        return detector.detectFrameGrid(topLeft, size, size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static World world(List<Entity> entities) {
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getNearbyEntities":
+                        BoundingBox box = (BoundingBox) args[0];
+                        Predicate<Entity> filter = args.length > 1 ? (Predicate<Entity>) args[1] : entity -> true;
+                        List<Entity> found = new ArrayList<>();
+                        for (Entity entity : entities) {
+                            Location loc = entity.getLocation();
+                            if (box.contains(loc.getX(), loc.getY(), loc.getZ()) && filter.test(entity)) {
+                                found.add(entity);
+                            }
+                        }
+                        return found;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return null;
+                }
+            });
+    }
+
+    private static ItemFrame itemFrame(Location location, BlockFace facing, ItemStack item) {
+        UUID id = UUID.randomUUID();
+        return (ItemFrame) Proxy.newProxyInstance(ItemFrame.class.getClassLoader(), new Class<?>[]{ItemFrame.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getLocation":
+                        return location.clone();
+                    case "getFacing":
+                        return facing;
+                    case "getItem":
+                        return item;
+                    case "getUniqueId":
+                        return id;
+                    case "hashCode":
+                        return id.hashCode();
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return null;
+                }
+            });
+    }
+}
@@ -0,0 +1,230 @@
+package com.vibedrochka.video;
+
+import org.bukkit.entity.Player;
+import org.bukkit.map.MapCanvas;
+import org.bukkit.map.MapCursorCollection;
+import org.bukkit.map.MapFont;
+import org.bukkit.map.MapView;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.lang.reflect.Proxy;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Synthetic video content and stand-ins for the server objects the hot paths touch.
+ * Interfaces that are too large to implement by hand are created as dynamic proxies.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * A moving colour gradient with some noise, so every frame differs from the last
+     */
+    static int[] syntheticPixels(int width, int height, int frame, long seed) {
+        Random random = new Random(seed + frame);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x + frame * 3) & 0xFF;
+                int g = (y + frame * 5) & 0xFF;
+                int b = ((x ^ y) + random.nextInt(16)) & 0xFF;
+                pixels[y * width + x] = (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Builds a store where roughly the given fraction of tiles changes from one frame to the next
+     */
+    static ArrayFrameStore syntheticStore(int columns, int rows, int frameCount, double changeRate, long seed) {
+        Random random = new Random(seed);
+        int tileCount = columns * rows;
+        byte[][][] tiles = new byte[frameCount][tileCount][];
+        long[][] hashes = new long[frameCount][tileCount];
+
+        for (int f = 0; f < frameCount; f++) {
+            for (int t = 0; t < tileCount; t++) {
+                if (f > 0 && random.nextDouble() >= changeRate) {
+                    tiles[f][t] = tiles[f - 1][t];
+                } else {
+                    byte[] tile = new byte[MapFrame.TILE_PIXELS];
+                    random.nextBytes(tile);
+                    tiles[f][t] = tile;
+                }
+                hashes[f][t] = MapFrame.hashTile(tiles[f][t]);
+            }
+        }
+        return new ArrayFrameStore(columns, rows, tiles, hashes);
+    }
+
+    static MapView mapView(int id) {
+        return (MapView) Proxy.newProxyInstance(MapView.class.getClassLoader(), new Class<?>[]{MapView.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getId":
+                        return id;
+                    case "hashCode":
+                        return id;
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return null;
+                }
+            });
+    }
+
+    /**
+     * A player that only counts the maps sent to it
+     */
+    static Player player(AtomicLong sentMaps) {
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "sendMap":
+                        sentMaps.incrementAndGet();
+                        return null;
+                    case "isOnline":
+                        return true;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return null;
+                }
+            });
+    }
+
+    /**
+     * In-memory frame store, so benchmarks measure the callers rather than disk access
+     */
+    static final class ArrayFrameStore implements FrameStore {
+
+        private final int columns;
+        private final int rows;
+        private final byte[][][] tiles;
+        private final long[][] hashes;
+
+        ArrayFrameStore(int columns, int rows, byte[][][] tiles, long[][] hashes) {
+            this.columns = columns;
+            this.rows = rows;
+            this.tiles = tiles;
+            this.hashes = hashes;
+        }
+
+        @Override
+        public int getColumns() {
+            return columns;
+        }
+
+        @Override
+        public int getRows() {
+            return rows;
+        }
+
+        @Override
+        public int getFrameCount() {
+            return tiles.length;
+        }
+
+        @Override
+        public boolean isComplete() {
+            return true;
+        }
+
+        @Override
+        public long getTileHash(int frame, int tile) {
+            return hashes[frame][tile];
+        }
+
+        @Override
+        public void readTile(int frame, int tile, byte[] destination) {
+            System.arraycopy(tiles[frame][tile], 0, destination, 0, MapFrame.TILE_PIXELS);
+        }
+
+        @Override
+        public long getHeapBytes() {
+            return (long) tiles.length * columns * rows * MapFrame.TILE_PIXELS;
+        }
+
+        @Override
+        public long getOffHeapBytes() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Canvas backed by a plain array, similar to what the server does for each map
+     */
+    static final class ArrayMapCanvas implements MapCanvas {
+
+        private final byte[] buffer = new byte[MapFrame.TILE_PIXELS];
+
+        @Override
+        public MapView getMapView() {
+            return null;
+        }
+
+        @Override
+        public MapCursorCollection getCursors() {
+            return null;
+        }
+
+        @Override
+        public void setCursors(MapCursorCollection cursors) {
+        }
+
+        @Override
+        public void setPixelColor(int x, int y, Color color) {
+        }
+
+        @Override
+        public Color getPixelColor(int x, int y) {
+            return null;
+        }
+
+        @Override
+        public Color getBasePixelColor(int x, int y) {
+            return null;
+        }
+
+        @Override
+        public void setPixel(int x, int y, byte color) {
+            if (x < 0 || y < 0 || x >= MapFrame.MAP_SIZE || y >= MapFrame.MAP_SIZE) {
+                return;
+            }
+            buffer[y * MapFrame.MAP_SIZE + x] = color;
+        }
+
+        @Override
+        public byte getPixel(int x, int y) {
+            return buffer[y * MapFrame.MAP_SIZE + x];
+        }
+
+        @Override
+        public byte getBasePixel(int x, int y) {
+            return 0;
+        }
+
+        @Override
+        public void drawImage(int x, int y, Image image) {
+        }
+
+        @Override
+        public void drawText(int x, int y, MapFont font, String text) {
+        }
+
+        byte[] getBuffer() {
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.vibedrochka.video;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding one frame record of the cache format. Decoding has to keep up with
+ * playback when frames are read ahead of the playhead, encoding runs once per processed frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameCodecBenchmark {
+
+    private static final int FRAME_COUNT = 60;
+    private static final int KEYFRAME_INTERVAL = 30;
+
+    /**
+     * Wall size in maps, columns x rows
+     */
+    @Param({"1x1", "4x3", "8x8"})
+    public String grid;
+
+    /**
+     * Share of tiles that change from one frame to the next
+     */
+    @Param({"0.1", "0.5", "1.0"})
+    public double changeRate;
+
+    private MapFrame[] frames;
+    private FrameCodec encoder;
+    private DataOutputStream sink;
+    private int encodeFrame;
+
+    private ByteArrayInputStream encoded;
+    private DataInputStream source;
+    private FrameCodec decoder;
+    private MapFrame decoded;
+    private int decodeFrame;
+
+    @Setup
+    public void setup() throws IOException {
+        String[] size = grid.split("x");
+        int columns = Integer.parseInt(size[0]);
+        int rows = Integer.parseInt(size[1]);
+        BenchmarkFixtures.ArrayFrameStore store = BenchmarkFixtures.syntheticStore(columns, rows, FRAME_COUNT, changeRate, 42L);
+
+        frames = new MapFrame[FRAME_COUNT];
+        for (int f = 0; f < FRAME_COUNT; f++) {
+            byte[][] tiles = new byte[columns * rows][MapFrame.TILE_PIXELS];
+            long[] hashes = new long[tiles.length];
+            for (int t = 0; t < tiles.length; t++) {
+                store.readTile(f, t, tiles[t]);
+                hashes[t] = store.getTileHash(f, t);
+            }
+            frames[f] = new MapFrame(columns, rows, tiles, hashes);
+        }
+
+        // One pass over the video, so decoding can loop over it
+        ByteArrayOutputStream recording = new ByteArrayOutputStream();
+        FrameCodec recorder = new FrameCodec(columns, rows);
+        try (DataOutputStream out = new DataOutputStream(recording)) {
+            for (int f = 0; f < FRAME_COUNT; f++) {
+                recorder.encode(frames[f], previous(f), out);
+            }
+        } finally {
+            recorder.close();
+        }
+
+        encoder = new FrameCodec(columns, rows);
+        sink = new DataOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        encoded = new ByteArrayInputStream(recording.toByteArray());
+        source = new DataInputStream(encoded);
+        decoder = new FrameCodec(columns, rows);
+    }
+
+    @TearDown
+    public void tearDown() {
+        encoder.close();
+        decoder.close();
+    }
+
+    @Benchmark
+    public long encode() throws IOException {
+        int f = encodeFrame;
+        encodeFrame = (f + 1) % FRAME_COUNT;
+        return encoder.encode(frames[f], previous(f), sink);
+    }
+
+    private MapFrame previous(int frame) {
+        return frame % KEYFRAME_INTERVAL == 0 ? null : frames[frame - 1];
+    }
+
+    @Benchmark
+    public MapFrame decode() throws IOException {
+        if (decodeFrame == FRAME_COUNT) {
+            // Back to the first record, which is a keyframe
+            encoded.reset();
+            decodeFrame = 0;
+            decoded = null;
+        }
+        decodeFrame++;
+        decoded = decoder.decode(source, decoded);
+        return decoded;
+    }
+}
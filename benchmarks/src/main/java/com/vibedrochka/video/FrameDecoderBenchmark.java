@@ -0,0 +1,101 @@
+package com.vibedrochka.video;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and unpacking rgb24 frames as FFmpeg writes them to its pipe. The bytes come
+ * from memory, so this measures the decoder's own work and not FFmpeg's.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameDecoderBenchmark {
+
+    private static final int RECORDED_FRAMES = 8;
+
+    /**
+     * Wall size in maps, columns x rows
+     */
+    @Param({"1x1", "4x3", "8x8"})
+    public String grid;
+
+    private FrameDecoder decoder;
+    private int[] pixels;
+
+    @Setup
+    public void setup() {
+        String[] size = grid.split("x");
+        int width = Integer.parseInt(size[0]) * MapFrame.MAP_SIZE;
+        int height = Integer.parseInt(size[1]) * MapFrame.MAP_SIZE;
+
+        byte[] recording = new byte[RECORDED_FRAMES * width * height * 3];
+        int offset = 0;
+        for (int f = 0; f < RECORDED_FRAMES; f++) {
+            for (int rgb : BenchmarkFixtures.syntheticPixels(width, height, f, 42L)) {
+                recording[offset++] = (byte) (rgb >> 16);
+                recording[offset++] = (byte) (rgb >> 8);
+                recording[offset++] = (byte) rgb;
+            }
+        }
+
+        decoder = new FrameDecoder(new LoopingInputStream(recording), width, height, 20);
+        pixels = new int[width * height];
+    }
+
+    @TearDown
+    public void tearDown() {
+        decoder.close();
+    }
+
+    @Benchmark
+    public int[] readFrame() throws IOException {
+        decoder.readFrame(pixels);
+        return pixels;
+    }
+
+    /**
+     * Replays the same recording forever, so the decoder never runs out of frames
+     */
+    private static final class LoopingInputStream extends InputStream {
+
+        private final byte[] data;
+        private int position;
+
+        LoopingInputStream(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            int value = data[position] & 0xFF;
+            position = (position + 1) % data.length;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            int count = Math.min(length, data.length - position);
+            System.arraycopy(data, position, buffer, offset, count);
+            position = (position + count) % data.length;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.vibedrochka.video;
+
+import org.bukkit.map.MapPalette;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RGB to map palette conversion of one decoded frame: the lookup-table quantizer used at
+ * ingestion against Bukkit's own color matching
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuantizerBenchmark {
+
+    /**
+     * Wall size in maps, columns x rows
+     */
+    @Param({"1x1", "4x3", "8x8"})
+    public String grid;
+
+    /**
+     * {@link DitherMode} of the lookup-table quantizer; Bukkit's matching never dithers
+     */
+    @Param({"NEAREST", "ORDERED", "ERROR_DIFFUSION"})
+    public String dither;
+
+    private ForkJoinPool pool;
+    private MapColorQuantizer quantizer;
+    private DitherMode ditherMode;
+    private int columns;
+    private int rows;
+    private int[] pixels;
+
+    @Setup
+    public void setup() {
+        String[] size = grid.split("x");
+        columns = Integer.parseInt(size[0]);
+        rows = Integer.parseInt(size[1]);
+        ditherMode = DitherMode.valueOf(dither);
+        pixels = BenchmarkFixtures.syntheticPixels(columns * MapFrame.MAP_SIZE, rows * MapFrame.MAP_SIZE, 0, 42L);
+
+        pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        quantizer = new MapColorQuantizer(pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public MapFrame lookupTable() {
+        return quantizer.quantize(pixels, columns * MapFrame.MAP_SIZE, rows * MapFrame.MAP_SIZE, columns, rows, ditherMode);
+    }
+
+    @Benchmark
+    public MapFrame bukkitMatchColor() {
+        return matchColors(pixels, columns * MapFrame.MAP_SIZE, rows * MapFrame.MAP_SIZE, columns, rows);
+    }
+
+    /**
+     * Splits packed 0xRRGGBB pixels into map tiles and matches every pixel with
+     * {@link MapPalette#matchColor(Color)}, the way frames were converted before the lookup table.
+     * Pixels outside the source (when it is smaller than the grid) are filled with black.
+     */
+    private static MapFrame matchColors(int[] pixels, int width, int height, int columns, int rows) {
+        byte[][] tiles = new byte[columns * rows][];
+        byte black = MapPalette.matchColor(Color.BLACK);
+
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                byte[] tile = new byte[MapFrame.TILE_PIXELS];
+                int originX = col * MapFrame.MAP_SIZE;
+                int originY = row * MapFrame.MAP_SIZE;
+
+                // Consecutive pixels are very often identical, so remember the last match
+                int lastRgb = -1;
+                byte lastColor = black;
+
+                for (int y = 0; y < MapFrame.MAP_SIZE; y++) {
+                    int sourceY = originY + y;
+                    for (int x = 0; x < MapFrame.MAP_SIZE; x++) {
+                        int sourceX = originX + x;
+                        if (sourceX >= width || sourceY >= height) {
+                            tile[y * MapFrame.MAP_SIZE + x] = black;
+                            continue;
+                        }
+
+                        int rgb = pixels[sourceY * width + sourceX] & 0xFFFFFF;
+                        if (rgb != lastRgb) {
+                            lastColor = MapPalette.matchColor(new Color(rgb));
+                            lastRgb = rgb;
+                        }
+                        tile[y * MapFrame.MAP_SIZE + x] = lastColor;
+                    }
+                }
+
+                tiles[row * columns + col] = tile;
+            }
+        }
+
+        return new MapFrame(columns, rows, tiles);
+    }
+}
@@ -0,0 +1,68 @@
+package com.vibedrochka.video;
+
+import org.bukkit.map.MapView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of drawing one prepared 128x128 tile onto a map canvas, and of the render calls the
+ * server makes for each player a map is sent to. Only the first render after a tile change
+ * draws; the rest should cost next to nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RendererBenchmark {
+
+    private final BenchmarkFixtures.ArrayMapCanvas canvas = new BenchmarkFixtures.ArrayMapCanvas();
+    private final VideoRenderer.GridVideoRenderer renderer = new VideoRenderer.GridVideoRenderer();
+    private final MapView mapView = BenchmarkFixtures.mapView(0);
+    private byte[] tile;
+
+    @Setup
+    public void setup() {
+        tile = new byte[MapFrame.TILE_PIXELS];
+        new Random(42).nextBytes(tile);
+        renderer.setTile(tile);
+        renderer.render(mapView, canvas, null);
+    }
+
+    @Benchmark
+    public byte[] drawTile() {
+        VideoRenderer.drawTile(canvas, tile);
+        return canvas.getBuffer();
+    }
+
+    /**
+     * A frame change followed by one render, as for the first player the map is sent to
+     */
+    @Benchmark
+    public byte[] renderChangedTile() {
+        renderer.setTile(tile);
+        renderer.render(mapView, canvas, null);
+        return canvas.getBuffer();
+    }
+
+    /**
+     * A render without a frame change, as for every further player
+     */
+    @Benchmark
+    public byte[] renderUnchangedTile() {
+        renderer.render(mapView, canvas, null);
+        return canvas.getBuffer();
+    }
+}
@@ -0,0 +1,185 @@
+package com.vibedrochka.video;
+
+import org.bukkit.map.MapView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * One playback tick of a video wall. A {@link VideoSession} needs a running server, so the
+ * benchmark calls the parts of the tick that do not: the {@link FramePipeline} prepares the
+ * next frame, {@link VideoSession#showPreparedFrame} hands changed tiles to the renderers and
+ * marks them for every viewer, and {@link MapSendScheduler#distribute} splits the budgets so
+ * {@link VideoSession#sendTiles} sends each viewer its most urgent tiles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionTickBenchmark {
+
+    private static final int FRAME_COUNT = 64;
+
+    /**
+     * Wall size in maps, columns x rows
+     */
+    @Param({"1x1", "4x3", "8x8"})
+    public String grid;
+
+    @Param({"1", "10", "50"})
+    public int players;
+
+    /**
+     * Share of tiles that change between consecutive frames
+     */
+    @Param({"0.25", "1.0"})
+    public double changeRate;
+
+    /**
+     * Maps each player may receive per tick
+     */
+    @Param({"10"})
+    public int budget;
+
+    /**
+     * Maps all players together may receive per tick
+     */
+    @Param({"200"})
+    public int serverBudget;
+
+    private int columns;
+    private FrameStore frames;
+    private FramePipeline pipeline;
+    private VideoRenderer.GridVideoRenderer[][] renderers;
+    private MapView[][] mapViews;
+    private List<ViewerState> viewers;
+    private final List<List<ViewerState>> pending = new ArrayList<>();
+    private FramePipeline.PreparedFrame shown;
+    private double[] distances;
+    private int[] selected;
+    private final AtomicLong sentMaps = new AtomicLong();
+    private int nextFrame;
+    private long tick;
+
+    @Setup
+    public void setup() {
+        String[] size = grid.split("x");
+        columns = Integer.parseInt(size[0]);
+        int rows = Integer.parseInt(size[1]);
+        frames = BenchmarkFixtures.syntheticStore(columns, rows, FRAME_COUNT, changeRate, 42L);
+        pipeline = new FramePipeline(frames, new DirectExecutor(), Logger.getLogger("SessionTickBenchmark"));
+
+        int tileCount = columns * rows;
+        renderers = new VideoRenderer.GridVideoRenderer[rows][columns];
+        mapViews = new MapView[rows][columns];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < columns; x++) {
+                renderers[y][x] = new VideoRenderer.GridVideoRenderer();
+                mapViews[y][x] = BenchmarkFixtures.mapView(y * columns + x);
+            }
+        }
+
+        viewers = new ArrayList<>();
+        for (int p = 0; p < players; p++) {
+            viewers.add(new ViewerState(null, BenchmarkFixtures.player(sentMaps), columns, tileCount));
+        }
+        distances = new double[tileCount];
+        for (int t = 0; t < tileCount; t++) {
+            distances[t] = 8 + t % columns;
+        }
+        selected = new int[tileCount];
+    }
+
+    @TearDown
+    public void tearDown() {
+        pipeline.close();
+        frames.close();
+    }
+
+    /**
+     * Preparation happens on a worker in the plugin, so it is kept out of the main thread measurement
+     */
+    @Setup(Level.Invocation)
+    public void prepareNextFrame() {
+        pipeline.request(nextFrame);
+        nextFrame = (nextFrame + 1) % FRAME_COUNT;
+    }
+
+    @Benchmark
+    public long mainThreadTick() {
+        tick++;
+        shown = VideoSession.showPreparedFrame(pipeline, renderers, columns, viewers, tick);
+        if (shown == null) {
+            return sentMaps.get();
+        }
+
+        // Every player sees this one wall
+        pending.clear();
+        for (ViewerState viewer : viewers) {
+            if (viewer.getStaleCount() > 0 && viewer.isDue(tick)) {
+                pending.add(Collections.singletonList(viewer));
+            }
+        }
+        MapSendScheduler.distribute(pending, budget, serverBudget, tick, this::send);
+        return sentMaps.get();
+    }
+
+    private void send(ViewerState viewer, int share) {
+        VideoSession.sendTiles(viewer, shown, share, distances, tick, selected, mapViews, columns);
+    }
+
+    /**
+     * Runs frame preparation on the calling thread
+     */
+    private static final class DirectExecutor extends AbstractExecutorService {
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.vibedrochka;
 
 import com.vibedrochka.commands.VidedrochkaCommand;
+import com.vibedrochka.video.VideoListener;
 import com.vibedrochka.video.VideoManager;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -26,9 +27,32 @@ public class VibeDrochkaPlugin extends JavaPlugin {
             }
         }
         
+        // Write config.yml with defaults on first start
+        saveDefaultConfig();
+        
         // Initialize video manager
         videoManager = new VideoManager(this);
         
+        // Measure TPS so video processing can back off while the server is busy
+        videoManager.getTickMonitor().start();
+        
+        // Collect playback metrics for /videdrochka stats, the metrics file and Flight Recorder
+        videoManager.getMetrics().start();
+        
+        // Send map updates of all video walls within the configured bandwidth budget
+        videoManager.getSendScheduler().start();
+        
+        // Handle video items and frames of every video wall
+        getServer().getPluginManager().registerEvents(new VideoListener(this), this);
+        
+        // Suspend video walls nobody can see
+        getServer().getPluginManager().registerEvents(videoManager.getSessionMonitor(), this);
+        videoManager.getSessionMonitor().start();
+        
+        // Bring back video walls that were playing before the last shutdown
+        getServer().getPluginManager().registerEvents(videoManager.getDeployments(), this);
+        videoManager.getDeployments().load();
+        
         // Register command
         getCommand("videdrochka").setExecutor(new VidedrochkaCommand(this));
         
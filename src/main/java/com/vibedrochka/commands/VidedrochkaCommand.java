@@ -1,8 +1,12 @@
 package com.vibedrochka.commands;
 
 import com.vibedrochka.VibeDrochkaPlugin;
+import com.vibedrochka.video.MetricsReporter;
+import com.vibedrochka.video.ProcessingJob;
+import com.vibedrochka.video.ProcessingQueue;
+import com.vibedrochka.video.SessionMetrics;
 import com.vibedrochka.video.VideoData;
-import com.vibedrochka.video.VideoItem;
+import com.vibedrochka.video.VideoSession;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -10,6 +14,10 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
 
 public class VidedrochkaCommand implements CommandExecutor {
     
@@ -28,8 +36,26 @@ public class VidedrochkaCommand implements CommandExecutor {
         
         Player player = (Player) sender;
         
+        if (args.length >= 1 && args.length <= 2 && args[0].equalsIgnoreCase("queue")) {
+            showQueue(player);
+            return true;
+        }
+        
+        if (args.length >= 1 && args.length <= 2 && args[0].equalsIgnoreCase("cancel")) {
+            cancelJob(player, args.length == 2 ? args[1] : null);
+            return true;
+        }
+        
+        if (args.length == 1 && args[0].equalsIgnoreCase("stats")) {
+            showStats(player);
+            return true;
+        }
+        
         if (args.length < 4 || args.length > 5) {
             player.sendMessage(ChatColor.RED + "Usage: /videdrochka <name> <url> <width> <height> [framerate]");
+            player.sendMessage(ChatColor.RED + "       /videdrochka queue");
+            player.sendMessage(ChatColor.RED + "       /videdrochka cancel [job]");
+            player.sendMessage(ChatColor.RED + "       /videdrochka stats");
             return true;
         }
         
@@ -78,25 +104,171 @@ public class VidedrochkaCommand implements CommandExecutor {
             }
         }
         
-        player.sendMessage(ChatColor.YELLOW + "Processing video: " + name);
+        ProcessingQueue queue = plugin.getVideoManager().getProcessingQueue();
+        String refusal = queue.canSubmit(player);
+        if (refusal != null) {
+            player.sendMessage(ChatColor.RED + refusal);
+            return true;
+        }
+        
+        // Create video data
+        VideoData videoData = new VideoData(name, urlString, width, height, framerate);
+        
+        // Queue the video; workers process a limited number of videos at a time
+        ProcessingJob job = queue.submit(videoData, player);
+        
+        player.sendMessage(ChatColor.YELLOW + "Queued video: " + name + ChatColor.GRAY + " (job #" + job.getId() + ")");
         player.sendMessage(ChatColor.GRAY + "URL: " + urlString);
         player.sendMessage(ChatColor.GRAY + "Dimensions: " + width + "x" + height + " blocks");
         player.sendMessage(ChatColor.GRAY + "Framerate: " + framerate + " FPS");
         
-        // Create video data
-        VideoData videoData = new VideoData(name, urlString, width, height, framerate);
+        int position = queue.getQueuePosition(job);
+        if (position > 1) {
+            player.sendMessage(ChatColor.GRAY + "Position in queue: " + position);
+        }
+        
+        return true;
+    }
+    
+    private void showQueue(Player player) {
+        ProcessingQueue queue = plugin.getVideoManager().getProcessingQueue();
+        boolean admin = player.hasPermission("vibedrochka.admin");
+        List<ProcessingJob> jobs = admin ? queue.getJobs() : queue.getJobs(player.getUniqueId());
+        
+        if (jobs.isEmpty()) {
+            player.sendMessage(ChatColor.YELLOW + "No videos are being processed.");
+            return;
+        }
         
-        // Process video asynchronously
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+        player.sendMessage(ChatColor.AQUA + "Video processing queue:");
+        for (ProcessingJob job : jobs) {
+            StringBuilder line = new StringBuilder();
+            line.append(ChatColor.GRAY).append("#").append(job.getId()).append(" ")
+                .append(ChatColor.WHITE).append(job.getVideoData().getName());
+            if (admin) {
+                line.append(ChatColor.GRAY).append(" (").append(job.getPlayer().getName()).append(")");
+            }
+            line.append(ChatColor.GRAY).append(" - ");
+            
+            switch (job.getState()) {
+                case QUEUED:
+                    line.append("queued, position ").append(queue.getQueuePosition(job));
+                    break;
+                case DOWNLOADING:
+                    line.append("downloading");
+                    break;
+                case PROCESSING:
+                    int total = job.getTotalFrames();
+                    line.append("processing ").append(job.getDecodedFrames());
+                    if (total > 0) {
+                        line.append("/").append(total).append(" frames (")
+                            .append(Math.min(100, job.getDecodedFrames() * 100 / total)).append("%)");
+                    } else {
+                        line.append(" frames");
+                    }
+                    break;
+            }
+            player.sendMessage(line.toString());
+        }
+    }
+    
+    private void cancelJob(Player player, String idArgument) {
+        ProcessingQueue queue = plugin.getVideoManager().getProcessingQueue();
+        ProcessingJob job;
+        
+        if (idArgument == null) {
+            // Cancel the player's most recent job
+            List<ProcessingJob> jobs = queue.getJobs(player.getUniqueId());
+            if (jobs.isEmpty()) {
+                player.sendMessage(ChatColor.RED + "You have no videos being processed.");
+                return;
+            }
+            job = jobs.get(jobs.size() - 1);
+        } else {
             try {
-                plugin.getVideoManager().processVideo(videoData, player);
-            } catch (Exception e) {
-                player.sendMessage(ChatColor.RED + "Error processing video: " + e.getMessage());
-                plugin.getLogger().severe("Error processing video: " + e.getMessage());
-                e.printStackTrace();
+                job = queue.getJob(Integer.parseInt(idArgument.startsWith("#") ? idArgument.substring(1) : idArgument));
+            } catch (NumberFormatException e) {
+                player.sendMessage(ChatColor.RED + "Job must be a number, see /videdrochka queue");
+                return;
+            }
+            if (job == null) {
+                player.sendMessage(ChatColor.RED + "No such job, see /videdrochka queue");
+                return;
             }
-        });
+        }
         
-        return true;
+        if (!job.getPlayer().getUniqueId().equals(player.getUniqueId()) && !player.hasPermission("vibedrochka.admin")) {
+            player.sendMessage(ChatColor.RED + "You can only cancel your own videos!");
+            return;
+        }
+        
+        if (queue.cancel(job)) {
+            job.getPlayer().sendMessage(ChatColor.YELLOW + "Processing of " + job.getVideoData().getName() + " was cancelled.");
+        }
+        if (job.getPlayer() != player) {
+            player.sendMessage(ChatColor.YELLOW + "Cancelled job #" + job.getId() + ".");
+        }
+    }
+    
+    private void showStats(Player player) {
+        if (!player.hasPermission("vibedrochka.admin")) {
+            player.sendMessage(ChatColor.RED + "You don't have permission to view video stats!");
+            return;
+        }
+        
+        MetricsReporter.Snapshot stats = plugin.getVideoManager().getMetrics().snapshot();
+        SessionMetrics totals = stats.getTotals();
+        
+        player.sendMessage(ChatColor.AQUA + "Video stats:");
+        player.sendMessage(ChatColor.GRAY + "Server: " + ChatColor.WHITE + format("%.1f", stats.getTps()) + " TPS" +
+                           ChatColor.GRAY + ", video walls use " + ChatColor.WHITE + formatMillis(stats.getTickNanos()) + " per tick");
+        player.sendMessage(ChatColor.GRAY + "Walls: " + ChatColor.WHITE + stats.getPlayingSessions() + " playing, " +
+                           stats.getSuspendedSessions() + " suspended");
+        player.sendMessage(ChatColor.GRAY + "Maps sent: " + ChatColor.WHITE + format("%.0f", stats.getMapsPerSecond()) + "/s" +
+                           ChatColor.GRAY + ", " + totals.getMapsSent() + " total (" + formatBytes(totals.getBytesSent()) + ")");
+        player.sendMessage(ChatColor.GRAY + "Dropped frames: " + ChatColor.WHITE + totals.getDroppedFrames());
+        player.sendMessage(ChatColor.GRAY + "Frame memory: " + ChatColor.WHITE + formatBytes(stats.getHeapBytes()) + " heap, " +
+                           formatBytes(stats.getOffHeapBytes()) + " on disk");
+        player.sendMessage(ChatColor.GRAY + "Frame cache: " + ChatColor.WHITE + formatBytes(stats.getFrameCacheBytes()) + ", " +
+                           format("%.1f", stats.getFrameCacheHitRate() * 100) + "% hits" + ChatColor.GRAY + " (" +
+                           stats.getFrameCacheMisses() + " decoded, " + stats.getFrameCacheEvictions() + " evicted)");
+        player.sendMessage(ChatColor.GRAY + "Processing: " + ChatColor.WHITE + stats.getRunningJobs() + " running, " +
+                           stats.getQueuedJobs() + " queued, " + stats.getActiveDownloads() + " downloading");
+        
+        // The walls that cost the main thread the most come first
+        List<VideoSession> sessions = new ArrayList<>(plugin.getVideoManager().getActiveSessions().values());
+        sessions.removeIf(VideoSession::isSuspended);
+        if (sessions.isEmpty()) {
+            return;
+        }
+        sessions.sort(Comparator.comparingDouble((VideoSession session) -> session.getMetrics().getAverageTickNanos()).reversed());
+        
+        player.sendMessage(ChatColor.AQUA + "Most expensive walls:");
+        for (VideoSession session : sessions.subList(0, Math.min(5, sessions.size()))) {
+            SessionMetrics metrics = session.getMetrics();
+            player.sendMessage(ChatColor.WHITE + session.getVideoData().getName() + ChatColor.GRAY + " " +
+                               session.getVideoData().getWidth() + "x" + session.getVideoData().getHeight() + ", " +
+                               session.getViewerCount() + " viewers (" + session.getDegradedViewers() + " reduced) - " +
+                               ChatColor.WHITE + formatMillis(metrics.getAverageTickNanos()) + "/tick" + ChatColor.GRAY +
+                               " (" + format("%.1f", metrics.getTickShare() * 100) + "%), " +
+                               format("%.0f", metrics.getMapsPerSecond()) + " maps/s, " +
+                               session.getPendingUpdates() + " pending, " +
+                               metrics.getDroppedFrames() + " dropped");
+        }
+    }
+    
+    private static String format(String pattern, double value) {
+        return String.format(Locale.ROOT, pattern, value);
+    }
+    
+    private static String formatMillis(double nanos) {
+        return format("%.2f", nanos / 1_000_000.0) + " ms";
+    }
+    
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024 * 1024) {
+            return format("%.1f", bytes / 1024.0) + " KB";
+        }
+        return format("%.1f", bytes / (1024.0 * 1024.0)) + " MB";
     }
-}
\ No newline at end of file
+}
@@ -1,17 +1,24 @@
 package com.vibedrochka.utils;
 
 import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.ItemFrame;
 import org.bukkit.block.BlockFace;
+import org.bukkit.util.BoundingBox;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ItemFrameDetector {
     
     /**
-     * Detects a grid of item frames starting from a clicked frame
+     * Detects a grid of item frames starting from a clicked frame.
+     * All frames of the wall are fetched with a single entity query and indexed by block
+     * position, so even the largest walls are matched in one pass.
      * @param startFrame The frame that was clicked
      * @param gridWidth Width of the grid in blocks
      * @param gridHeight Height of the grid in blocks
@@ -23,13 +30,11 @@ public class ItemFrameDetector {
         
         // For grid detection, the clicked frame is the TOP-LEFT corner
         // We need to build the grid going RIGHT and DOWN from there
-        
-        List<List<ItemFrame>> grid = new ArrayList<>();
         Location startLoc = startFrame.getLocation();
-        
-        System.out.println("[FrameDetector] Building " + gridWidth + "x" + gridHeight + " grid starting from TOP-LEFT at " + 
-                          startLoc.getBlockX() + "," + startLoc.getBlockY() + "," + startLoc.getBlockZ() + 
-                          " facing " + facing);
+        World world = startLoc.getWorld();
+        int startX = startLoc.getBlockX();
+        int startY = startLoc.getBlockY();
+        int startZ = startLoc.getBlockZ();
         
         // Determine the direction vectors based on facing
         int rightX = 0, rightZ = 0; // Direction to go "right" in the grid
@@ -42,135 +47,58 @@ public class ItemFrameDetector {
             case UP: rightX = -1; rightZ = 0; break;     // Ceiling: right = -X (REVERSED)
             case DOWN: rightX = -1; rightZ = 0; break;   // Floor: right = -X (REVERSED)
             default:
-                System.out.println("[FrameDetector] Unsupported facing: " + facing);
                 return null;
         }
         
+        // The opposite corner of the wall: rightmost column, bottom row (going DOWN means -Y)
+        int endX = startX + (gridWidth - 1) * rightX;
+        int endY = startY - (gridHeight - 1);
+        int endZ = startZ + (gridWidth - 1) * rightZ;
+        
+        BoundingBox box = new BoundingBox(
+            Math.min(startX, endX), Math.min(startY, endY), Math.min(startZ, endZ),
+            Math.max(startX, endX) + 1, Math.max(startY, endY) + 1, Math.max(startZ, endZ) + 1);
+        
+        // Index every frame on the wall by its block position
+        Map<Long, ItemFrame> framesByBlock = new HashMap<>();
+        for (Entity entity : world.getNearbyEntities(box, candidate -> candidate instanceof ItemFrame)) {
+            ItemFrame frame = (ItemFrame) entity;
+            if (frame.getFacing() == facing) {
+                Location loc = frame.getLocation();
+                framesByBlock.put(blockKey(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()), frame);
+            }
+        }
+        
+        if (framesByBlock.size() < gridWidth * gridHeight) {
+            return null;
+        }
+        
         // Build grid row by row (top to bottom)
+        List<List<ItemFrame>> grid = new ArrayList<>(gridHeight);
         for (int row = 0; row < gridHeight; row++) {
-            List<ItemFrame> gridRow = new ArrayList<>();
+            List<ItemFrame> gridRow = new ArrayList<>(gridWidth);
             
             // Build each column in this row (left to right, so col=0 is leftmost)
             for (int col = 0; col < gridWidth; col++) {
-                // Calculate position: start + (col * right_direction) + (row * down_direction)
-                double x = startLoc.getX() + (col * rightX);
-                double y = startLoc.getY() - row; // Go DOWN means -Y
-                double z = startLoc.getZ() + (col * rightZ);
+                ItemFrame frame = framesByBlock.get(blockKey(startX + col * rightX, startY - row, startZ + col * rightZ));
                 
-                Location targetLoc = new Location(startLoc.getWorld(), x, y, z);
-                System.out.println("[FrameDetector] Looking for frame at grid[" + col + "," + row + "] = " + 
-                                  targetLoc.getBlockX() + "," + targetLoc.getBlockY() + "," + targetLoc.getBlockZ());
-                
-                ItemFrame frame = findItemFrameAt(targetLoc, facing);
-                
-                if (frame == null) {
-                    System.out.println("[FrameDetector] Missing frame at grid[" + col + "," + row + "]");
+                if (frame == null || frame.getItem().getType() != Material.AIR) {
                     return null;
                 }
                 
-                if (frame.getItem().getType() != org.bukkit.Material.AIR) {
-                    System.out.println("[FrameDetector] Frame at grid[" + col + "," + row + "] is not empty");
-                    return null;
-                }
-                
-                System.out.println("[FrameDetector] Found frame at grid[" + col + "," + row + "] at " + 
-                                  frame.getLocation().getBlockX() + "," + frame.getLocation().getBlockY() + "," + frame.getLocation().getBlockZ());
                 gridRow.add(frame);
             }
             
             grid.add(gridRow);
         }
         
-        System.out.println("[FrameDetector] Successfully built " + grid.size() + "x" + grid.get(0).size() + " grid");
-        
-        // Debug: Print the complete grid structure
-        for (int row = 0; row < grid.size(); row++) {
-            for (int col = 0; col < grid.get(row).size(); col++) {
-                ItemFrame frame = grid.get(row).get(col);
-                System.out.println("[FrameDetector] Final grid[" + col + "," + row + "] = " + 
-                                  frame.getLocation().getBlockX() + "," + frame.getLocation().getBlockY() + "," + frame.getLocation().getBlockZ());
-            }
-        }
-        
         return grid;
     }
     
     /**
-     * Determines the right and down directions for building a grid based on the frame's facing direction
-     */
-    private GridDirections getGridDirections(BlockFace facing) {
-        switch (facing) {
-            case NORTH:
-                return new GridDirections(1, 0, 0, 0, 1, 0); // Right: +X, Down: +Y
-            case SOUTH:
-                return new GridDirections(-1, 0, 0, 0, 1, 0); // Right: -X, Down: +Y
-            case EAST:
-                return new GridDirections(0, 0, 1, 0, 1, 0); // Right: +Z, Down: +Y
-            case WEST:
-                return new GridDirections(0, 0, -1, 0, 1, 0); // Right: -Z, Down: +Y
-            case UP:
-                return new GridDirections(1, 0, 0, 0, 0, -1); // Right: +X, Down: -Z
-            case DOWN:
-                return new GridDirections(1, 0, 0, 0, 0, 1); // Right: +X, Down: +Z
-            default:
-                return null;
-        }
-    }
-    
-    /**
-     * Calculates the location where a frame should be in the grid
-     */
-    private Location calculateFrameLocation(Location startLocation, GridDirections directions, int gridX, int gridY) {
-        double x = startLocation.getX() + (gridX * directions.rightX) + (gridY * directions.downX);
-        double y = startLocation.getY() + (gridX * directions.rightY) + (gridY * directions.downY);
-        double z = startLocation.getZ() + (gridX * directions.rightZ) + (gridY * directions.downZ);
-        
-        return new Location(startLocation.getWorld(), x, y, z);
-    }
-    
-    /**
-     * Finds an item frame at the specified location with the specified facing direction
+     * Packs a block position into a single map key
      */
-    private ItemFrame findItemFrameAt(Location location, BlockFace expectedFacing) {
-        // Search for nearby entities within a small radius
-        for (Entity entity : location.getWorld().getNearbyEntities(location, 0.5, 0.5, 0.5)) {
-            if (entity instanceof ItemFrame) {
-                ItemFrame frame = (ItemFrame) entity;
-                
-                // Check if it's at the right location and facing the right direction
-                if (frame.getFacing() == expectedFacing && 
-                    isLocationClose(frame.getLocation(), location, 0.1)) {
-                    return frame;
-                }
-            }
-        }
-        
-        return null;
-    }
-    
-    /**
-     * Checks if two locations are close to each other within a tolerance
-     */
-    private boolean isLocationClose(Location loc1, Location loc2, double tolerance) {
-        return Math.abs(loc1.getX() - loc2.getX()) <= tolerance &&
-               Math.abs(loc1.getY() - loc2.getY()) <= tolerance &&
-               Math.abs(loc1.getZ() - loc2.getZ()) <= tolerance;
-    }
-    
-    /**
-     * Helper class to store grid direction vectors
-     */
-    private static class GridDirections {
-        final double rightX, rightY, rightZ;
-        final double downX, downY, downZ;
-        
-        GridDirections(double rightX, double rightY, double rightZ, double downX, double downY, double downZ) {
-            this.rightX = rightX;
-            this.rightY = rightY;
-            this.rightZ = rightZ;
-            this.downX = downX;
-            this.downY = downY;
-            this.downZ = downZ;
-        }
+    private static long blockKey(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
     }
 }
\ No newline at end of file
@@ -0,0 +1,130 @@
+package com.vibedrochka.video;
+
+import com.vibedrochka.VibeDrochkaPlugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares processed videos between every deployment that plays them.
+ * Assets are keyed by cache key (source + render parameters) and reference counted:
+ * each running session holds one reference. An asset nobody references is unloaded
+ * after a grace period; video items only store the key, so using one later simply
+ * loads the asset again from the persistent cache.
+ */
+public class AssetRegistry {
+
+    private final VibeDrochkaPlugin plugin;
+    private final long idleUnloadMillis;
+    private final Map<String, VideoAsset> assets = new HashMap<>();
+    private boolean closed = false;
+
+    public AssetRegistry(VibeDrochkaPlugin plugin) {
+        this.plugin = plugin;
+        this.idleUnloadMillis = Math.max(0, plugin.getConfig().getLong("assets.idle-unload-seconds", 60)) * 1000L;
+    }
+
+    /**
+     * Takes a reference to a loaded asset
+     * @return The asset, or null if it is not loaded
+     */
+    public synchronized VideoAsset acquire(String key) {
+        VideoAsset asset = assets.get(key);
+        if (asset != null) {
+            asset.references++;
+        }
+        return asset;
+    }
+
+    /**
+     * Adds a newly processed or loaded asset and takes a reference to it. If another thread
+     * registered the same key in the meantime, the given frames are closed and the existing
+     * asset is returned instead.
+     */
+    public VideoAsset register(String key, VideoData videoData, FrameStore frames) {
+        VideoAsset existing;
+        synchronized (this) {
+            existing = assets.get(key);
+            if (existing == null) {
+                if (closed) {
+                    throw new IllegalStateException("Asset registry is closed");
+                }
+                VideoAsset asset = new VideoAsset(key, videoData, frames);
+                asset.references = 1;
+                assets.put(key, asset);
+                return asset;
+            }
+            existing.references++;
+        }
+
+        plugin.getVideoManager().closeFrameStore(frames);
+        return existing;
+    }
+
+    /**
+     * Gives back a reference. Once no references are left the asset is unloaded after the
+     * configured grace period, unless somebody acquires it again before that.
+     */
+    public void release(VideoAsset asset) {
+        synchronized (this) {
+            if (closed || asset.references <= 0) {
+                return;
+            }
+            asset.references--;
+            if (asset.references > 0) {
+                return;
+            }
+            asset.idleSince = System.currentTimeMillis();
+        }
+
+        long delayTicks = Math.max(1, idleUnloadMillis / 50);
+        plugin.getServer().getScheduler().runTaskLater(plugin, this::unloadIdle, delayTicks);
+    }
+
+    /**
+     * Unloads every asset that has had no references for the whole grace period
+     */
+    public void unloadIdle() {
+        List<VideoAsset> unloaded = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            for (VideoAsset asset : new ArrayList<>(assets.values())) {
+                if (asset.references == 0 && now - asset.idleSince >= idleUnloadMillis) {
+                    assets.remove(asset.getKey());
+                    unloaded.add(asset);
+                }
+            }
+        }
+
+        for (VideoAsset asset : unloaded) {
+            plugin.getVideoManager().closeFrameStore(asset.getFrames());
+            plugin.getLogger().info("Unloaded unused video " + asset.getVideoData().getName());
+        }
+    }
+
+    public synchronized boolean isLoaded(String key) {
+        return assets.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return assets.size();
+    }
+
+    /**
+     * Unloads everything; further releases are ignored
+     */
+    public void close() {
+        List<VideoAsset> all;
+        synchronized (this) {
+            closed = true;
+            all = new ArrayList<>(assets.values());
+            assets.clear();
+        }
+        for (VideoAsset asset : all) {
+            asset.getFrames().close();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.vibedrochka.video;
+
+import com.vibedrochka.VibeDrochkaPlugin;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.EntitiesLoadEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Saves deployed video walls on shutdown and brings them back after a restart.
+ * Walls are restored lazily: a record waits until all of its item frames are loaded,
+ * then its frames are taken from the asset registry, or read from the persistent cache
+ * off the main thread.
+ */
+public class DeploymentManager implements Listener {
+
+    private static final String FILE_NAME = "deployments.yml";
+
+    private final VibeDrochkaPlugin plugin;
+    private final File file;
+
+    // Records not restored yet, and an index from each of their item frames to the record
+    private final Map<String, DeploymentRecord> pending = new LinkedHashMap<>();
+    private final Map<UUID, DeploymentRecord> pendingByFrame = new HashMap<>();
+    private final Set<String> restoring = new HashSet<>();
+
+    public DeploymentManager(VibeDrochkaPlugin plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getVideoFolder(), FILE_NAME);
+    }
+
+    /**
+     * Reads saved deployments and tries to restore the ones whose frames are already loaded
+     */
+    public void load() {
+        if (!file.isFile()) {
+            return;
+        }
+
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+        ConfigurationSection deployments = config.getConfigurationSection("deployments");
+        if (deployments == null) {
+            return;
+        }
+
+        for (String sessionId : deployments.getKeys(false)) {
+            DeploymentRecord record = DeploymentRecord.load(sessionId, deployments.getConfigurationSection(sessionId));
+            if (record == null) {
+                plugin.getLogger().warning("Skipping invalid saved deployment: " + sessionId);
+                continue;
+            }
+            addPending(record);
+        }
+
+        plugin.getLogger().info("Loaded " + pending.size() + " saved video deployments");
+
+        // Worlds and spawn chunks are ready on the first tick
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            for (DeploymentRecord record : new ArrayList<>(pending.values())) {
+                tryRestore(record);
+            }
+        });
+    }
+
+    /**
+     * Writes the given running sessions, plus any records that were never restored
+     */
+    public void save(Map<String, VideoSession> sessions) {
+        YamlConfiguration config = new YamlConfiguration();
+        ConfigurationSection deployments = config.createSection("deployments");
+
+        for (Map.Entry<String, VideoSession> entry : sessions.entrySet()) {
+            DeploymentRecord record = DeploymentRecord.fromSession(entry.getKey(), entry.getValue());
+            record.save(deployments.createSection(record.getSessionId()));
+        }
+        for (DeploymentRecord record : pending.values()) {
+            if (!sessions.containsKey(record.getSessionId())) {
+                record.save(deployments.createSection(record.getSessionId()));
+            }
+        }
+
+        try {
+            config.save(file);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to save video deployments: " + e.getMessage());
+        }
+    }
+
+    private void addPending(DeploymentRecord record) {
+        pending.put(record.getSessionId(), record);
+        for (UUID frameId : record.getFrameIds()) {
+            pendingByFrame.put(frameId, record);
+        }
+    }
+
+    private void removePending(DeploymentRecord record) {
+        pending.remove(record.getSessionId());
+        for (UUID frameId : record.getFrameIds()) {
+            pendingByFrame.remove(frameId);
+        }
+    }
+
+    @EventHandler
+    public void onEntitiesLoad(EntitiesLoadEvent event) {
+        if (pendingByFrame.isEmpty()) {
+            return;
+        }
+
+        Set<DeploymentRecord> candidates = new HashSet<>();
+        for (Entity entity : event.getEntities()) {
+            DeploymentRecord record = pendingByFrame.get(entity.getUniqueId());
+            if (record != null) {
+                candidates.add(record);
+            }
+        }
+        for (DeploymentRecord record : candidates) {
+            tryRestore(record);
+        }
+    }
+
+    /**
+     * Looks up the record's item frames
+     * @return The frame grid, or null while any frame is not loaded
+     */
+    private List<List<ItemFrame>> resolveGrid(DeploymentRecord record) {
+        int width = record.getVideoData().getWidth();
+        int height = record.getVideoData().getHeight();
+        List<List<ItemFrame>> grid = new ArrayList<>();
+
+        for (int row = 0; row < height; row++) {
+            List<ItemFrame> gridRow = new ArrayList<>();
+            for (int col = 0; col < width; col++) {
+                Entity entity = plugin.getServer().getEntity(record.getFrameIds().get(row * width + col));
+                if (!(entity instanceof ItemFrame) || !entity.isValid()) {
+                    return null;
+                }
+                gridRow.add((ItemFrame) entity);
+            }
+            grid.add(gridRow);
+        }
+        return grid;
+    }
+
+    private void tryRestore(DeploymentRecord record) {
+        if (restoring.contains(record.getSessionId()) || resolveGrid(record) == null) {
+            return;
+        }
+        restoring.add(record.getSessionId());
+
+        // Decompressing the cached frames can take a moment, keep it off the main thread
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            VideoAsset asset = plugin.getVideoManager().loadAsset(record.getAssetKey(), record.getVideoData());
+
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                restoring.remove(record.getSessionId());
+
+                // The frames may have unloaded again while the cache was being read
+                List<List<ItemFrame>> grid = resolveGrid(record);
+
+                if (asset == null) {
+                    // E.g. the wall was deployed while its video was still being processed. Its maps
+                    // would stay frozen in the frames, so wait until they are loaded again to clear them.
+                    if (grid == null) {
+                        return;
+                    }
+                    plugin.getLogger().warning("Cannot restore video " + record.getVideoData().getName() +
+                                               ": its cached frames are missing, clearing its item frames");
+                    removePending(record);
+                    for (List<ItemFrame> row : grid) {
+                        for (ItemFrame frame : row) {
+                            frame.setItem(null);
+                        }
+                    }
+                    return;
+                }
+
+                if (grid == null) {
+                    plugin.getVideoManager().getAssets().release(asset);
+                    return;
+                }
+
+                removePending(record);
+                plugin.getVideoManager().resumeDeployment(record, asset, grid);
+            });
+        });
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+}
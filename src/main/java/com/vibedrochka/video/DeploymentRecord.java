@@ -0,0 +1,114 @@
+package com.vibedrochka.video;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.ItemFrame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Everything needed to bring a deployed video wall back after a restart:
+ * which video, which cached asset, which item frames and where playback was.
+ */
+public class DeploymentRecord {
+
+    private final String sessionId;
+    private final VideoData videoData;
+    private final String assetKey;
+    private final List<UUID> frameIds;
+    private final int position;
+
+    public DeploymentRecord(String sessionId, VideoData videoData, String assetKey, List<UUID> frameIds,
+                            int position) {
+        this.sessionId = sessionId;
+        this.videoData = videoData;
+        this.assetKey = assetKey;
+        this.frameIds = frameIds;
+        this.position = position;
+    }
+
+    /**
+     * Captures the current state of a running session
+     */
+    public static DeploymentRecord fromSession(String sessionId, VideoSession session) {
+        List<UUID> frameIds = new ArrayList<>();
+        for (List<ItemFrame> row : session.getFrameGrid()) {
+            for (ItemFrame frame : row) {
+                frameIds.add(frame.getUniqueId());
+            }
+        }
+
+        return new DeploymentRecord(sessionId, session.getVideoData(), session.getAssetKey(), frameIds,
+                                    session.getCurrentFrame());
+    }
+
+    public void save(ConfigurationSection section) {
+        section.set("name", videoData.getName());
+        section.set("url", videoData.getUrl());
+        section.set("width", videoData.getWidth());
+        section.set("height", videoData.getHeight());
+        section.set("framerate", videoData.getFramerate());
+        section.set("asset", assetKey);
+        section.set("position", position);
+
+        List<String> frames = new ArrayList<>();
+        for (UUID frameId : frameIds) {
+            frames.add(frameId.toString());
+        }
+        section.set("frames", frames);
+    }
+
+    /**
+     * @return The record, or null if the section is incomplete
+     */
+    public static DeploymentRecord load(String sessionId, ConfigurationSection section) {
+        VideoData videoData = new VideoData(
+            section.getString("name"),
+            section.getString("url"),
+            section.getInt("width"),
+            section.getInt("height"),
+            section.getInt("framerate")
+        );
+        String assetKey = section.getString("asset");
+
+        List<UUID> frameIds = new ArrayList<>();
+        try {
+            for (String frameId : section.getStringList("frames")) {
+                frameIds.add(UUID.fromString(frameId));
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        if (videoData.getName() == null || assetKey == null || videoData.getFramerate() <= 0 ||
+            frameIds.isEmpty() || frameIds.size() != videoData.getWidth() * videoData.getHeight()) {
+            return null;
+        }
+
+        return new DeploymentRecord(sessionId, videoData, assetKey, frameIds, section.getInt("position"));
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public VideoData getVideoData() {
+        return videoData;
+    }
+
+    public String getAssetKey() {
+        return assetKey;
+    }
+
+    /**
+     * @return Item frame UUIDs in row-major grid order
+     */
+    public List<UUID> getFrameIds() {
+        return frameIds;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+}
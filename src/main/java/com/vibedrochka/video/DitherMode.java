@@ -0,0 +1,50 @@
+package com.vibedrochka.video;
+
+import java.util.Locale;
+
+/**
+ * How RGB pixels are converted to the map palette. Every mode works within one map tile,
+ * so tiles are still quantized in parallel without depending on each other.
+ */
+public enum DitherMode {
+
+    /**
+     * Nearest palette color. Flat and stable, but shows banding on gradients.
+     */
+    NEAREST,
+
+    /**
+     * Nearest color after a fixed 4x4 Bayer offset per pixel position. Smooths gradients, and
+     * since the offset never changes and the source is reduced to 6 bits per channel first,
+     * a pixel only changes when its source color changes noticeably.
+     */
+    ORDERED,
+
+    /**
+     * Floyd-Steinberg error diffusion. Most accurate colors, but small source changes can
+     * ripple through the tile, so fewer tiles stay unchanged between frames.
+     */
+    ERROR_DIFFUSION;
+
+    /**
+     * @param name Mode name as written in the config, e.g. "ordered" or "error-diffusion"
+     * @return The mode, or null if there is no such mode
+     */
+    public static DitherMode fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return Name as written in the config
+     */
+    public String getConfigName() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
@@ -0,0 +1,365 @@
+package com.vibedrochka.video;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Frame store that keeps frames compressed at rest, as {@link FrameCodec} records in a file,
+ * and decodes them on demand into the shared {@link FrameCache}. The heap holds one offset
+ * per frame; decoded frames only exist while they are in the cache.
+ *
+ * A store is either a spool file that frames are appended to while a video is processed,
+ * so sessions can play it while it is still being decoded, or a read-only view of the frame
+ * records in a cache entry. Every {@link #getKeyframeInterval()}th frame is a keyframe, so
+ * decoding any frame starts at most that many records back, and usually from the frame
+ * before it, which is still in the cache during playback.
+ *
+ * The file is accessed through {@link RandomAccessFile}s rather than a {@link java.nio.channels.FileChannel}:
+ * cancelling a job interrupts the thread appending frames, and an interrupt closes a channel
+ * for every thread, which would stop walls that already play the frames decoded so far.
+ */
+public class EncodedFrameStore implements FrameStore {
+
+    private final File file;
+    private final boolean ownsFile;
+    private final RandomAccessFile writer; // Null if read-only
+    private final RandomAccessFile reader;
+    private final FrameCache cache;
+    private final int columns;
+    private final int rows;
+    private final int keyframeInterval;
+
+    // Record f spans offsets[f] to offsets[f + 1]; grown by replacing the array, and entries are
+    // only written past the published frame count. The array is published before the count, so
+    // readers read the count first: any array they see afterwards covers it.
+    private volatile long[] offsets;
+    private volatile int frameCount;
+    private volatile boolean complete;
+    private volatile boolean closed;
+
+    // Appending, guarded by this
+    private final FrameCodec encoder;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private MapFrame lastAppended;
+
+    // Decoding, guarded by decodeLock
+    private final Object decodeLock = new Object();
+    private final FrameCodec decoder;
+    private byte[] recordBuffer = new byte[0];
+
+    // The frame the last lookup resolved to; it is read once per tile
+    private volatile DecodedFrame lastDecoded;
+
+    private EncodedFrameStore(File file, boolean ownsFile, FrameCache cache, int columns, int rows,
+                              int keyframeInterval, long[] offsets, int frameCount) throws IOException {
+        this.file = file;
+        this.ownsFile = ownsFile;
+        this.cache = cache;
+        this.columns = columns;
+        this.rows = rows;
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        this.offsets = offsets;
+        this.frameCount = frameCount;
+        if (ownsFile) {
+            this.writer = new RandomAccessFile(file, "rw");
+            this.writer.setLength(0);
+        } else {
+            this.writer = null;
+        }
+        this.reader = new RandomAccessFile(file, "r");
+        this.encoder = new FrameCodec(columns, rows);
+        this.decoder = new FrameCodec(columns, rows);
+    }
+
+    /**
+     * Creates an empty store to append frames to
+     * @param file Spool file, created or truncated; it is deleted again on {@link #close()}
+     * @param columns Number of maps horizontally
+     * @param rows Number of maps vertically
+     * @param keyframeInterval Every this many frames a keyframe is written
+     */
+    public static EncodedFrameStore create(File file, FrameCache cache, int columns, int rows,
+                                           int keyframeInterval) throws IOException {
+        return new EncodedFrameStore(file, true, cache, columns, rows, keyframeInterval, new long[256], 0);
+    }
+
+    /**
+     * Opens the frame records in an existing file, e.g. a cache entry. Only the record
+     * boundaries are read; the file is left in place on {@link #close()}.
+     * @param dataOffset Position of the first record in the file
+     * @param frameCount Number of records
+     * @param keyframeInterval Interval the records were written with
+     */
+    public static EncodedFrameStore open(File file, long dataOffset, int frameCount, FrameCache cache,
+                                         int columns, int rows, int keyframeInterval) throws IOException {
+        long[] offsets = new long[frameCount + 1];
+        offsets[0] = dataOffset;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            FrameCodec.skipFully(in, dataOffset);
+            for (int f = 0; f < frameCount; f++) {
+                offsets[f + 1] = offsets[f] + FrameCodec.skip(in, columns * rows);
+            }
+        }
+
+        EncodedFrameStore store = new EncodedFrameStore(file, false, cache, columns, rows,
+                                                        keyframeInterval, offsets, frameCount);
+        store.complete = true;
+        return store;
+    }
+
+    /**
+     * Appends a frame. Only one thread may append at a time; any number of threads may read.
+     */
+    public synchronized void append(MapFrame frame) throws IOException {
+        if (closed || !ownsFile) {
+            throw new IllegalStateException("Frame store is closed or read-only");
+        }
+        if (frame.getColumns() != columns || frame.getRows() != rows) {
+            throw new IllegalArgumentException("Frame is " + frame.getColumns() + "x" + frame.getRows() +
+                                               " maps, store is " + columns + "x" + rows);
+        }
+
+        int index = frameCount;
+        record.reset();
+        encoder.encode(frame, index % keyframeInterval == 0 ? null : lastAppended, recordOut);
+        recordOut.flush();
+
+        long[] current = offsets;
+        long start = current[index];
+        writer.seek(start);
+        writer.write(record.toByteArray());
+
+        if (index + 2 > current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[index + 1] = start + record.size();
+        offsets = current;
+        lastAppended = frame;
+
+        // Publishing the new count makes the frame visible to readers
+        frameCount = index + 1;
+    }
+
+    /**
+     * Marks the store as finished; no more frames will be appended
+     */
+    public synchronized void markComplete() {
+        complete = true;
+        lastAppended = null;
+    }
+
+    /**
+     * @return The decoded frame, from the cache or decoded now
+     */
+    private MapFrame frame(int index) {
+        if (closed) {
+            throw new IllegalStateException("Frame store is closed");
+        }
+        if (index < 0 || index >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + index + " of " + frameCount);
+        }
+
+        // Tiles of the same frame are read one after another, so the cache only counts a new frame
+        DecodedFrame last = lastDecoded;
+        if (last != null && last.index == index) {
+            return last.frame;
+        }
+        MapFrame frame = cache.peek(this, index);
+        if (frame != null) {
+            cache.countHit();
+        } else {
+            try {
+                frame = decode(index);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to decode frame " + index, e);
+            }
+        }
+        lastDecoded = new DecodedFrame(index, frame);
+        return frame;
+    }
+
+    private MapFrame decode(int index) throws IOException {
+        synchronized (decodeLock) {
+            if (closed) {
+                throw new IllegalStateException("Frame store is closed");
+            }
+            MapFrame frame = cache.peek(this, index);
+            if (frame != null) {
+                // Another thread decoded it while we waited
+                cache.countHit();
+                return frame;
+            }
+            cache.countMiss();
+
+            // Start from the latest decoded frame since the keyframe, during playback the one before
+            int from = index - index % keyframeInterval;
+            for (int f = index - 1; f >= from; f--) {
+                MapFrame cached = cache.peek(this, f);
+                if (cached != null) {
+                    frame = cached;
+                    from = f + 1;
+                    break;
+                }
+            }
+
+            long[] bounds = offsets;
+            for (int f = from; f <= index; f++) {
+                int length = (int) (bounds[f + 1] - bounds[f]);
+                if (recordBuffer.length < length) {
+                    recordBuffer = new byte[length];
+                }
+                reader.seek(bounds[f]);
+                reader.readFully(recordBuffer, 0, length);
+                frame = decoder.decode(new DataInputStream(new ByteArrayInputStream(recordBuffer, 0, length)), frame);
+            }
+
+            cache.put(this, index, frame);
+            return frame;
+        }
+    }
+
+    @Override
+    public long getTileHash(int frame, int tile) {
+        return frame(frame).getTileHash(tile);
+    }
+
+    @Override
+    public void readTile(int frame, int tile, byte[] destination) {
+        System.arraycopy(frame(frame).getTile(tile), 0, destination, 0, MapFrame.TILE_PIXELS);
+    }
+
+    /**
+     * Copies the frame records as they are, e.g. into a cache entry
+     */
+    public void writeRecords(OutputStream out) throws IOException {
+        int count = frameCount;
+        long[] bounds = offsets;
+        long position = bounds[0];
+        long end = bounds[count];
+        byte[] buffer = new byte[1 << 16];
+        while (position < end) {
+            int length = (int) Math.min(buffer.length, end - position);
+            synchronized (decodeLock) {
+                if (closed) {
+                    throw new IllegalStateException("Frame store is closed");
+                }
+                reader.seek(position);
+                reader.readFully(buffer, 0, length);
+            }
+            out.write(buffer, 0, length);
+            position += length;
+        }
+    }
+
+    /**
+     * @return Position of a frame's record, counted from the first record
+     */
+    public long getRecordOffset(int frame) {
+        long[] bounds = offsets;
+        return bounds[frame] - bounds[0];
+    }
+
+    /**
+     * @return Every this many frames, starting at the first, the record is a keyframe
+     */
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return Bytes of the offset table; decoded frames are counted by the {@link FrameCache}
+     */
+    @Override
+    public long getHeapBytes() {
+        return (long) offsets.length * 8;
+    }
+
+    /**
+     * @return Bytes of compressed frame records on disk
+     */
+    @Override
+    public long getOffHeapBytes() {
+        return getRecordBytes();
+    }
+
+    /**
+     * @return Length of all frame records together
+     */
+    public long getRecordBytes() {
+        int count = frameCount;
+        long[] bounds = offsets;
+        return bounds[count] - bounds[0];
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lastAppended = null;
+        }
+        lastDecoded = null;
+        cache.removeAll(this);
+
+        synchronized (decodeLock) {
+            encoder.close();
+            decoder.close();
+            try {
+                if (writer != null) {
+                    writer.close();
+                }
+                reader.close();
+            } catch (IOException ignored) {
+                // Nothing useful to do, the store is unusable either way
+            }
+        }
+
+        if (ownsFile && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private static final class DecodedFrame {
+
+        private final int index;
+        private final MapFrame frame;
+
+        DecodedFrame(int index, MapFrame frame) {
+            this.index = index;
+            this.frame = frame;
+        }
+    }
+}
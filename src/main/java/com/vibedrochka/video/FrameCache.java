@@ -0,0 +1,143 @@
+package com.vibedrochka.video;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decoded frames of all {@link EncodedFrameStore}s, least recently used first out.
+ * Frames stay compressed at rest and are only decoded when a session is about to show
+ * them, so the heap cost of a loaded video depends on this cache's size and not on the
+ * video's length. Sequential playback needs the frame before the one being decoded, so
+ * even a small cache keeps every wall at one decoded record per frame.
+ */
+public class FrameCache {
+
+    private final long capacityBytes;
+    private final Map<Key, MapFrame> frames = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param capacityBytes Decoded frames are evicted once together they take more than this;
+     *                      the most recent frame is always kept
+     */
+    public FrameCache(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * Looks up a frame without counting it; the store counts once per frame it resolves,
+     * not once per tile read from it
+     * @return The decoded frame, or null if it has to be decoded
+     */
+    synchronized MapFrame peek(EncodedFrameStore store, int frame) {
+        return frames.get(new Key(store, frame));
+    }
+
+    synchronized void countHit() {
+        hits++;
+    }
+
+    synchronized void countMiss() {
+        misses++;
+    }
+
+    synchronized void put(EncodedFrameStore store, int frame, MapFrame decoded) {
+        Key key = new Key(store, frame);
+        if (frames.put(key, decoded) == null) {
+            bytes += sizeOf(decoded);
+        }
+
+        // The new frame is the most recently used, so it is the last to go
+        Iterator<Map.Entry<Key, MapFrame>> eldest = frames.entrySet().iterator();
+        while (bytes > capacityBytes && frames.size() > 1) {
+            Map.Entry<Key, MapFrame> entry = eldest.next();
+            bytes -= sizeOf(entry.getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops every frame of a store, e.g. because it was closed
+     */
+    synchronized void removeAll(EncodedFrameStore store) {
+        Iterator<Map.Entry<Key, MapFrame>> entries = frames.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Key, MapFrame> entry = entries.next();
+            if (entry.getKey().store == store) {
+                bytes -= sizeOf(entry.getValue());
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * Counts every tile, even ones shared with the frame before, so this errs on the high side
+     */
+    private static long sizeOf(MapFrame frame) {
+        return (long) frame.getTileCount() * (MapFrame.TILE_PIXELS + 8);
+    }
+
+    /**
+     * @return Approximate heap bytes of the cached frames
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    public synchronized int getFrameCount() {
+        return frames.size();
+    }
+
+    /**
+     * @return Frames to show that were found decoded
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Frames to show that had to be decoded
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private static final class Key {
+
+        private final EncodedFrameStore store;
+        private final int frame;
+
+        Key(EncodedFrameStore store, int frame) {
+            this.store = store;
+            this.frame = frame;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return key.store == store && key.frame == frame;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(store) * 31 + frame;
+        }
+    }
+}
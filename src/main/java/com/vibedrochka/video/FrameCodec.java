@@ -0,0 +1,240 @@
+package com.vibedrochka.video;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact encoding of a video's palette tiles as a stream of frame records.
+ * Keyframes hold every tile. Inter-frames hold only the tiles whose hash changed since the
+ * previous frame, each XORed with that tile's previous bytes, so pixels that stayed the same
+ * become runs of zeros that deflate shrinks to almost nothing. Decoding a frame therefore
+ * needs the frames since the last keyframe, which is what keyframes are placed for.
+ *
+ * Record layout (big-endian):
+ * <pre>
+ *   byte    type, {@link #KEYFRAME} or {@link #INTER_FRAME}
+ *   int     number of tiles n in the record
+ *   int[n]  row-major tile indices, inter-frames only
+ *   long[n] tile content hashes
+ *   int     compressed length
+ *   byte[]  deflated tile bytes in the order above, XORed with the previous tile for inter-frames
+ * </pre>
+ *
+ * Decoded frames share the arrays of unchanged tiles with the frame they were decoded onto,
+ * so tile arrays must never be modified once they are part of a frame.
+ * An instance only holds compression buffers and is not thread-safe.
+ */
+final class FrameCodec {
+
+    static final byte KEYFRAME = 0;
+    static final byte INTER_FRAME = 1;
+
+    private final int columns;
+    private final int rows;
+    private final int tileCount;
+
+    private final int[] changed;
+    private final long[] changedHashes;
+    private final byte[] scratch = new byte[MapFrame.TILE_PIXELS];
+    private final byte[] deflated = new byte[1 << 16];
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final Inflater inflater = new Inflater();
+    private byte[] compressed = new byte[0];
+
+    FrameCodec(int columns, int rows) {
+        this.columns = columns;
+        this.rows = rows;
+        this.tileCount = columns * rows;
+        this.changed = new int[tileCount];
+        this.changedHashes = new long[tileCount];
+    }
+
+    /**
+     * Writes a frame as the next record of the stream
+     * @param previous The frame before it, or null to write a keyframe
+     * @return Number of bytes written
+     */
+    long encode(MapFrame frame, MapFrame previous, DataOutputStream out) throws IOException {
+        boolean full = previous == null;
+        int count = 0;
+        for (int t = 0; t < tileCount; t++) {
+            if (full || frame.getTileHash(t) != previous.getTileHash(t)) {
+                changed[count++] = t;
+            }
+        }
+
+        buffer.reset();
+        deflater.reset();
+        for (int i = 0; i < count; i++) {
+            int tile = changed[i];
+            byte[] source = frame.getTile(tile);
+            if (full) {
+                deflate(source);
+            } else {
+                byte[] before = previous.getTile(tile);
+                for (int p = 0; p < MapFrame.TILE_PIXELS; p++) {
+                    scratch[p] = (byte) (source[p] ^ before[p]);
+                }
+                deflate(scratch);
+            }
+        }
+        deflater.finish();
+        deflate(null);
+
+        out.writeByte(full ? KEYFRAME : INTER_FRAME);
+        out.writeInt(count);
+        if (!full) {
+            for (int i = 0; i < count; i++) {
+                out.writeInt(changed[i]);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            out.writeLong(frame.getTileHash(changed[i]));
+        }
+        out.writeInt(buffer.size());
+        buffer.writeTo(out);
+
+        return 1 + 4 + (full ? 0 : 4L * count) + 8L * count + 4 + buffer.size();
+    }
+
+    /**
+     * Feeds input to the deflater and drains its output into the buffer
+     * @param input Bytes to add, or null to only drain after {@link Deflater#finish()}
+     */
+    private void deflate(byte[] input) {
+        if (input != null) {
+            deflater.setInput(input);
+        }
+        while (input != null ? !deflater.needsInput() : !deflater.finished()) {
+            int length = deflater.deflate(deflated, 0, deflated.length);
+            buffer.write(deflated, 0, length);
+        }
+    }
+
+    /**
+     * Reads a record and applies it to the frame before it
+     * @param previous The frame before the record, or null if it is a keyframe
+     * @return The decoded frame; tiles the record does not contain are shared with {@code previous}
+     */
+    MapFrame decode(DataInput in, MapFrame previous) throws IOException {
+        byte type = in.readByte();
+        if (type != KEYFRAME && (type != INTER_FRAME || previous == null)) {
+            throw new IOException("Unexpected frame record type " + type);
+        }
+        boolean full = type == KEYFRAME;
+
+        int count = in.readInt();
+        if (count < 0 || count > tileCount || (full && count != tileCount)) {
+            throw new IOException("Frame record has " + count + " of " + tileCount + " tiles");
+        }
+        for (int i = 0; i < count; i++) {
+            int tile = full ? i : in.readInt();
+            if (tile < 0 || tile >= tileCount) {
+                throw new IOException("Frame record refers to tile " + tile + " of " + tileCount);
+            }
+            changed[i] = tile;
+        }
+        for (int i = 0; i < count; i++) {
+            changedHashes[i] = in.readLong();
+        }
+
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Frame record has a negative length");
+        }
+        if (compressed.length < length) {
+            compressed = new byte[length];
+        }
+        in.readFully(compressed, 0, length);
+
+        byte[][] tiles = new byte[tileCount][];
+        long[] hashes = new long[tileCount];
+        if (!full) {
+            for (int t = 0; t < tileCount; t++) {
+                tiles[t] = previous.getTile(t);
+                hashes[t] = previous.getTileHash(t);
+            }
+        }
+
+        inflater.reset();
+        inflater.setInput(compressed, 0, length);
+        try {
+            for (int i = 0; i < count; i++) {
+                int tile = changed[i];
+                byte[] decoded = new byte[MapFrame.TILE_PIXELS];
+                inflateFully(decoded);
+                if (!full) {
+                    byte[] before = tiles[tile];
+                    for (int p = 0; p < MapFrame.TILE_PIXELS; p++) {
+                        decoded[p] ^= before[p];
+                    }
+                }
+                tiles[tile] = decoded;
+                hashes[tile] = changedHashes[i];
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Frame data is corrupt: " + e.getMessage(), e);
+        }
+        return new MapFrame(columns, rows, tiles, hashes);
+    }
+
+    /**
+     * Reads past a record without decoding it
+     * @param tileCount Number of tiles per frame
+     * @return Length of the record in bytes
+     */
+    static long skip(DataInputStream in, int tileCount) throws IOException {
+        byte type = in.readByte();
+        if (type != KEYFRAME && type != INTER_FRAME) {
+            throw new IOException("Unexpected frame record type " + type);
+        }
+        int count = in.readInt();
+        if (count < 0 || count > tileCount) {
+            throw new IOException("Frame record has " + count + " of " + tileCount + " tiles");
+        }
+        long headerBytes = (type == KEYFRAME ? 0 : 4L * count) + 8L * count;
+        skipFully(in, headerBytes);
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Frame record has a negative length");
+        }
+        skipFully(in, length);
+        return 1 + 4 + headerBytes + 4 + length;
+    }
+
+    static void skipFully(DataInputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            int skipped = in.skipBytes((int) Math.min(bytes, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                throw new IOException("Frame data is truncated");
+            }
+            bytes -= skipped;
+        }
+    }
+
+    private void inflateFully(byte[] destination) throws IOException, DataFormatException {
+        int inflated = 0;
+        while (inflated < destination.length) {
+            int count = inflater.inflate(destination, inflated, destination.length - inflated);
+            if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                throw new IOException("Frame data is truncated");
+            }
+            inflated += count;
+        }
+    }
+
+    /**
+     * Releases the native compression buffers. The codec must not be used afterwards.
+     */
+    void close() {
+        deflater.end();
+        inflater.end();
+    }
+}
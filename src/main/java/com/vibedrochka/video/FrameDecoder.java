@@ -0,0 +1,195 @@
+package com.vibedrochka.video;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Streams decoded frames straight out of an FFmpeg process as raw rgb24.
+ * Frames are read from stdout as fixed-size buffers while FFmpeg is still running,
+ * so there are no intermediate image files and no PNG encode/decode.
+ */
+public class FrameDecoder implements Closeable {
+
+    private static final int BYTES_PER_PIXEL = 3;
+    private static final Pattern DURATION = Pattern.compile("Duration: (\\d+):(\\d+):(\\d+(?:\\.\\d+)?)");
+    // With -loglevel level+..., every stderr line carries its level
+    private static final Pattern ERROR_LEVEL = Pattern.compile("\\[(?:error|fatal|panic)\\]");
+
+    private final Logger logger;
+    private final int width;
+    private final int height;
+    private final int framerate;
+    private final Process process;
+    private final DataInputStream input;
+    private final Thread errorReader;
+    private final byte[] rgbBuffer;
+    private volatile long durationMillis = -1;
+
+    /**
+     * Starts FFmpeg for the given file, scaled and padded to exactly width x height
+     * @param logger Logger that receives FFmpeg's errors
+     * @param videoFile Source video file
+     * @param width Output width in pixels
+     * @param height Output height in pixels
+     * @param framerate Output framerate in FPS
+     * @param threads FFmpeg worker threads, or 0 to let FFmpeg decide
+     */
+    public FrameDecoder(Logger logger, File videoFile, int width, int height, int framerate, int threads) throws IOException {
+        this.logger = logger;
+        this.width = width;
+        this.height = height;
+        this.framerate = framerate;
+        this.rgbBuffer = new byte[width * height * BYTES_PER_PIXEL];
+
+        List<String> command = new ArrayList<>();
+        command.add("ffmpeg");
+        // The input's duration is only printed at info level; no banner and no progress lines
+        command.add("-hide_banner");
+        command.add("-nostats");
+        command.add("-loglevel");
+        command.add("level+info");
+        if (threads > 0) {
+            // Keep FFmpeg from taking every core away from the server
+            command.add("-threads");
+            command.add(String.valueOf(threads));
+        }
+        command.add("-i");
+        command.add(videoFile.getAbsolutePath());
+        command.add("-an");
+        command.add("-vf");
+        command.add("scale=" + width + ":" + height + ":force_original_aspect_ratio=decrease,pad=" +
+                    width + ":" + height + ":(ow-iw)/2:(oh-ih)/2:black");
+        command.add("-r");
+        command.add(String.valueOf(framerate));
+        command.add("-f");
+        command.add("rawvideo");
+        command.add("-pix_fmt");
+        command.add("rgb24");
+        command.add("pipe:1");
+
+        this.process = new ProcessBuilder(command).start();
+        this.input = new DataInputStream(new BufferedInputStream(process.getInputStream(), rgbBuffer.length));
+
+        // stderr has to be drained on its own thread, otherwise FFmpeg blocks once the pipe fills up
+        this.errorReader = new Thread(this::drainErrorStream, "VibeDrochka-FFmpeg-stderr");
+        this.errorReader.setDaemon(true);
+        this.errorReader.start();
+    }
+
+    /**
+     * Reads raw rgb24 frames from a stream that is already open, e.g. recorded FFmpeg output
+     * @param rgbStream Frames of width*height*3 bytes, back to back
+     */
+    public FrameDecoder(InputStream rgbStream, int width, int height, int framerate) {
+        this.logger = null;
+        this.width = width;
+        this.height = height;
+        this.framerate = framerate;
+        this.rgbBuffer = new byte[width * height * BYTES_PER_PIXEL];
+        this.process = null;
+        this.errorReader = null;
+        this.input = new DataInputStream(new BufferedInputStream(rgbStream, rgbBuffer.length));
+    }
+
+    private void drainErrorStream() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (durationMillis < 0) {
+                    Matcher matcher = DURATION.matcher(line);
+                    if (matcher.find()) {
+                        durationMillis = Integer.parseInt(matcher.group(1)) * 3600000L
+                                       + Integer.parseInt(matcher.group(2)) * 60000L
+                                       + Math.round(Double.parseDouble(matcher.group(3)) * 1000);
+                    }
+                }
+                if (ERROR_LEVEL.matcher(line).find()) {
+                    logger.warning("FFmpeg: " + line);
+                } else {
+                    logger.fine("FFmpeg: " + line);
+                }
+            }
+        } catch (IOException ignored) {
+            // Process was closed
+        }
+    }
+
+    /**
+     * Reads the next frame as packed 0xRRGGBB pixels, row-major
+     * @param pixels Destination array of at least width*height entries
+     * @return false once FFmpeg has no more frames
+     */
+    public boolean readFrame(int[] pixels) throws IOException {
+        try {
+            input.readFully(rgbBuffer);
+        } catch (EOFException e) {
+            return false;
+        }
+
+        int pixelCount = width * height;
+        for (int i = 0, offset = 0; i < pixelCount; i++, offset += BYTES_PER_PIXEL) {
+            pixels[i] = ((rgbBuffer[offset] & 0xFF) << 16)
+                      | ((rgbBuffer[offset + 1] & 0xFF) << 8)
+                      | (rgbBuffer[offset + 2] & 0xFF);
+        }
+        return true;
+    }
+
+    /**
+     * Waits for FFmpeg to exit after all frames have been read
+     * @return The process exit code
+     */
+    public int waitFor() throws InterruptedException {
+        if (process == null) {
+            return 0;
+        }
+        int exitCode = process.waitFor();
+        errorReader.join(1000);
+        return exitCode;
+    }
+
+    /**
+     * Estimates how many frames FFmpeg will produce, from the duration it reports for the input
+     * @return The frame count, or -1 while the duration is not known (yet)
+     */
+    public int getExpectedFrameCount() {
+        long duration = durationMillis;
+        if (duration < 0) {
+            return -1;
+        }
+        return (int) Math.max(1, (duration * framerate + 999) / 1000);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void close() {
+        // Kill FFmpeg first, so a reader blocked on another thread sees the end of the stream
+        if (process != null && process.isAlive()) {
+            process.destroyForcibly();
+        }
+        try {
+            input.close();
+        } catch (IOException ignored) {
+            // Nothing left to read anyway
+        }
+    }
+}
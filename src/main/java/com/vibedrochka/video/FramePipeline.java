@@ -0,0 +1,193 @@
+package com.vibedrochka.video;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Prepares a session's next frame on a worker thread while the current one is on screen.
+ * The worker reads the tiles of the requested frame, sharing the byte arrays of tiles that
+ * did not change, and publishes the result through an atomic reference. The main thread
+ * only takes that reference and hands the changed tiles to their renderers.
+ *
+ * At most one frame is pending or being prepared at a time, and each one is diffed against
+ * the frame that was on screen when it was requested, so no tile change is ever lost.
+ * Tile arrays of frames that left the screen are recycled for the next preparation.
+ */
+public class FramePipeline {
+
+    private final FrameStore frames;
+    private final ExecutorService executor;
+    private final Logger logger;
+    private final int tileCount;
+
+    private final AtomicReference<PreparedFrame> ready = new AtomicReference<>();
+    private final AtomicBoolean busy = new AtomicBoolean();
+    private final Queue<byte[]> spareTiles = new ConcurrentLinkedQueue<>();
+    private final int maxSpareTiles;
+
+    // Main thread only
+    private PreparedFrame current;
+    private volatile boolean closed;
+
+    public FramePipeline(FrameStore frames, ExecutorService executor, Logger logger) {
+        this.frames = frames;
+        this.executor = executor;
+        this.logger = logger;
+        this.tileCount = frames.getColumns() * frames.getRows();
+        this.maxSpareTiles = tileCount * 2;
+    }
+
+    /**
+     * Asks a worker to prepare a frame, unless a frame is already pending or being prepared.
+     * Main thread only.
+     */
+    public void request(int frameIndex) {
+        if (closed || ready.get() != null || (current != null && current.frameIndex == frameIndex)) {
+            return;
+        }
+        if (!busy.compareAndSet(false, true)) {
+            return;
+        }
+
+        PreparedFrame base = current;
+        try {
+            executor.execute(() -> prepare(frameIndex, base));
+        } catch (RejectedExecutionException e) {
+            busy.set(false);
+        }
+    }
+
+    private void prepare(int frameIndex, PreparedFrame base) {
+        try {
+            if (closed || frameIndex >= frames.getFrameCount()) {
+                return;
+            }
+
+            byte[][] tiles = new byte[tileCount][];
+            long[] hashes = new long[tileCount];
+            int[] changed = new int[tileCount];
+            int changedCount = 0;
+
+            for (int t = 0; t < tileCount; t++) {
+                long hash = frames.getTileHash(frameIndex, t);
+                hashes[t] = hash;
+                if (base != null && base.hashes[t] == hash) {
+                    tiles[t] = base.tiles[t];
+                    continue;
+                }
+
+                byte[] tile = spareTiles.poll();
+                if (tile == null) {
+                    tile = new byte[MapFrame.TILE_PIXELS];
+                }
+                frames.readTile(frameIndex, t, tile);
+                tiles[t] = tile;
+                changed[changedCount++] = t;
+            }
+
+            int[] changedTiles = new int[changedCount];
+            System.arraycopy(changed, 0, changedTiles, 0, changedCount);
+            ready.set(new PreparedFrame(frameIndex, tiles, hashes, changedTiles));
+        } catch (RuntimeException e) {
+            // The store may have been closed under us when the session stopped
+            if (!closed) {
+                logger.warning("Failed to prepare video frame " + frameIndex + ": " + e.getMessage());
+            }
+        } finally {
+            busy.set(false);
+        }
+    }
+
+    /**
+     * Takes the prepared frame, if one is ready, and makes it the current one. Tiles replaced
+     * by it are recycled. Main thread only.
+     * @return The frame to show, or null if nothing new is ready
+     */
+    public PreparedFrame take() {
+        PreparedFrame next = ready.getAndSet(null);
+        if (next == null) {
+            return null;
+        }
+
+        if (current != null) {
+            for (int tile : next.changedTiles) {
+                if (spareTiles.size() < maxSpareTiles) {
+                    spareTiles.offer(current.tiles[tile]);
+                }
+            }
+        }
+        current = next;
+        return next;
+    }
+
+    /**
+     * @return The frame on screen, or null before the first one was taken
+     */
+    public PreparedFrame getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return Approximate bytes held by the tiles of the current frame and the recycled tiles
+     */
+    public long getHeapBytes() {
+        PreparedFrame shown = current;
+        long tiles = spareTiles.size() + (shown != null ? tileCount : 0);
+        return tiles * MapFrame.TILE_PIXELS;
+    }
+
+    /**
+     * Drops pending work; a preparation already running finishes but is never shown
+     */
+    public void close() {
+        closed = true;
+        ready.set(null);
+        spareTiles.clear();
+    }
+
+    /**
+     * Map data for one frame, ready to be handed to the renderers
+     */
+    public static class PreparedFrame {
+
+        private final int frameIndex;
+        private final byte[][] tiles;
+        private final long[] hashes;
+        private final int[] changedTiles;
+
+        PreparedFrame(int frameIndex, byte[][] tiles, long[] hashes, int[] changedTiles) {
+            this.frameIndex = frameIndex;
+            this.tiles = tiles;
+            this.hashes = hashes;
+            this.changedTiles = changedTiles;
+        }
+
+        public int getFrameIndex() {
+            return frameIndex;
+        }
+
+        /**
+         * @param tile Row-major tile index
+         * @return The tile's palette bytes; must not be modified
+         */
+        public byte[] getTile(int tile) {
+            return tiles[tile];
+        }
+
+        public long getTileHash(int tile) {
+            return hashes[tile];
+        }
+
+        /**
+         * @return Row-major indices of the tiles that differ from the frame shown before
+         */
+        public int[] getChangedTiles() {
+            return changedTiles;
+        }
+    }
+}
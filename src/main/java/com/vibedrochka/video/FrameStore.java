@@ -0,0 +1,60 @@
+package com.vibedrochka.video;
+
+import java.io.Closeable;
+
+/**
+ * Read access to the palette tiles of a processed video, by frame index.
+ * Implementations decide where the bytes live; sessions only ever copy out
+ * the tiles they need.
+ */
+public interface FrameStore extends Closeable {
+
+    /**
+     * @return Number of maps horizontally
+     */
+    int getColumns();
+
+    /**
+     * @return Number of maps vertically
+     */
+    int getRows();
+
+    /**
+     * @return Number of frames that can currently be read
+     */
+    int getFrameCount();
+
+    /**
+     * @return Whether all frames have been added; until then the frame count may still grow
+     */
+    boolean isComplete();
+
+    /**
+     * @return Content hash of a tile, see {@link MapFrame#hashTile(byte[])}
+     */
+    long getTileHash(int frame, int tile);
+
+    /**
+     * Copies a tile's 128x128 palette bytes into the destination array
+     * @param frame Frame index
+     * @param tile Row-major tile index
+     * @param destination Array of at least {@link MapFrame#TILE_PIXELS} bytes
+     */
+    void readTile(int frame, int tile, byte[] destination);
+
+    /**
+     * @return Bytes of frame data held on the Java heap
+     */
+    long getHeapBytes();
+
+    /**
+     * @return Bytes of frame data held outside the Java heap, e.g. compressed on disk
+     */
+    long getOffHeapBytes();
+
+    /**
+     * Releases the storage. The store must not be used afterwards.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,476 @@
+package com.vibedrochka.video;
+
+import org.bukkit.map.MapPalette;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
+
+/**
+ * Converts RGB pixels to map palette colors through a precomputed lookup table.
+ * The table has 6 bits per channel (2^18 entries, 256 KB), each entry holding Bukkit's
+ * match for the center of that color bucket. Frames are split into tiles and quantized
+ * in parallel on the given fork-join pool, optionally dithered, see {@link DitherMode}.
+ */
+public class MapColorQuantizer {
+
+    private static final int BITS_PER_CHANNEL = 6;
+    private static final int LUT_SIZE = 1 << (BITS_PER_CHANNEL * 3);
+
+    // Below this many LUT entries / tiles a task is run directly instead of being split further
+    private static final int LUT_BUILD_THRESHOLD = 4096;
+    private static final int TILE_THRESHOLD = 1;
+
+    // 4x4 Bayer matrix, turned into offsets of -ORDERED_SPREAD..ORDERED_SPREAD color buckets
+    private static final int[] BAYER_4X4 = {
+         0,  8,  2, 10,
+        12,  4, 14,  6,
+         3, 11,  1,  9,
+        15,  7, 13,  5
+    };
+    private static final int ORDERED_SPREAD = 3;
+
+    // With a frame history, ordered dithering keeps a pixel while no channel of its source moved further than this
+    private static final int STABLE_DELTA = 4;
+    private static final int[] ORDERED_OFFSETS = new int[BAYER_4X4.length];
+
+    static {
+        for (int i = 0; i < BAYER_4X4.length; i++) {
+            ORDERED_OFFSETS[i] = BAYER_4X4[i] * (2 * ORDERED_SPREAD + 1) / BAYER_4X4.length - ORDERED_SPREAD;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final byte[] lut;
+    private final int[] paletteRgb = new int[256];
+    private final long paletteSignature;
+
+    /**
+     * Builds the lookup table on the given pool. This takes a few hundred milliseconds,
+     * so it should not happen on the main server thread.
+     */
+    public MapColorQuantizer(ForkJoinPool pool) {
+        this.pool = pool;
+        this.lut = new byte[LUT_SIZE];
+        pool.invoke(new BuildLutTask(0, LUT_SIZE));
+        
+        // Actual RGB of every palette color the table uses, for error diffusion
+        boolean[] known = new boolean[256];
+        for (byte color : lut) {
+            if (!known[color & 0xFF]) {
+                known[color & 0xFF] = true;
+                paletteRgb[color & 0xFF] = MapPalette.getColor(color).getRGB() & 0xFFFFFF;
+            }
+        }
+        
+        CRC32 crc = new CRC32();
+        crc.update(lut, 0, lut.length);
+        this.paletteSignature = crc.getValue();
+    }
+
+    private static int lutIndex(int rgb) {
+        return ((rgb >>> 6) & 0x3F000) | ((rgb >>> 4) & 0xFC0) | ((rgb >>> 2) & 0x3F);
+    }
+
+    /**
+     * Center of the color bucket that a LUT index covers
+     */
+    private static Color bucketColor(int index) {
+        int shift = 8 - BITS_PER_CHANNEL;
+        int half = 1 << (shift - 1);
+        int r = ((index >>> 12) & 0x3F) << shift | half;
+        int g = ((index >>> 6) & 0x3F) << shift | half;
+        int b = (index & 0x3F) << shift | half;
+        return new Color(r, g, b);
+    }
+
+    /**
+     * Checksum of the lookup table. It changes whenever the server's map palette does,
+     * which makes previously quantized frames unusable.
+     */
+    public long getPaletteSignature() {
+        return paletteSignature;
+    }
+
+    /**
+     * @param rgb Packed 0xRRGGBB color
+     * @return The map palette color for it
+     */
+    public byte match(int rgb) {
+        return lut[lutIndex(rgb)];
+    }
+
+    /**
+     * Splits packed 0xRRGGBB pixels into map tiles, matching each pixel to its nearest palette color
+     * @see #quantize(int[], int, int, int, int, DitherMode, FrameHistory)
+     */
+    public MapFrame quantize(int[] pixels, int width, int height, int columns, int rows) {
+        return quantize(pixels, width, height, columns, rows, DitherMode.NEAREST);
+    }
+
+    /**
+     * Splits packed 0xRRGGBB pixels into map tiles, quantizing tiles in parallel.
+     * Pixels outside the source (when it is smaller than the grid) are filled with black.
+     * @param pixels Row-major packed RGB pixels
+     * @param width Source width in pixels
+     * @param height Source height in pixels
+     * @param columns Number of maps horizontally
+     * @param rows Number of maps vertically
+     * @param dither How to convert colors
+     * @param history Previous frames of the same video, so ordered dithering can keep pixels
+     *                whose source barely changed; null to quantize the frame on its own
+     */
+    public MapFrame quantize(int[] pixels, int width, int height, int columns, int rows, DitherMode dither,
+                             FrameHistory history) {
+        MapFrame previous = null;
+        int[] anchors = null;
+        if (history != null && dither == DitherMode.ORDERED) {
+            if (history.anchors == null || history.anchors.length != pixels.length) {
+                history.anchors = new int[pixels.length];
+                history.previous = null;
+            }
+            anchors = history.anchors;
+            previous = history.previous;
+        }
+
+        byte[][] tiles = new byte[columns * rows][];
+        long[] hashes = new long[tiles.length];
+        pool.invoke(new QuantizeTilesTask(pixels, width, height, columns, dither, previous, anchors, tiles, hashes, 0, tiles.length));
+        MapFrame frame = new MapFrame(columns, rows, tiles, hashes);
+
+        if (history != null) {
+            history.previous = frame;
+        }
+        return frame;
+    }
+
+    /**
+     * Splits packed 0xRRGGBB pixels into map tiles, quantizing every frame on its own
+     * @see #quantize(int[], int, int, int, int, DitherMode, FrameHistory)
+     */
+    public MapFrame quantize(int[] pixels, int width, int height, int columns, int rows, DitherMode dither) {
+        return quantize(pixels, width, height, columns, rows, dither, null);
+    }
+
+    private byte[] quantizeTile(int[] pixels, int width, int height, int originX, int originY, DitherMode dither,
+                                byte[] previousTile, int[] anchors) {
+        switch (dither) {
+            case ORDERED:
+                return quantizeTileOrdered(pixels, width, height, originX, originY, previousTile, anchors);
+            case ERROR_DIFFUSION:
+                return quantizeTileDiffused(pixels, width, height, originX, originY);
+            default:
+                return quantizeTileNearest(pixels, width, height, originX, originY);
+        }
+    }
+
+    private byte[] quantizeTileNearest(int[] pixels, int width, int height, int originX, int originY) {
+        byte[] tile = new byte[MapFrame.TILE_PIXELS];
+        byte black = match(0x000000);
+
+        for (int y = 0; y < MapFrame.MAP_SIZE; y++) {
+            int sourceY = originY + y;
+            int tileOffset = y * MapFrame.MAP_SIZE;
+
+            if (sourceY >= height) {
+                Arrays.fill(tile, tileOffset, tileOffset + MapFrame.MAP_SIZE, black);
+                continue;
+            }
+
+            int rowOffset = sourceY * width;
+            for (int x = 0; x < MapFrame.MAP_SIZE; x++) {
+                int sourceX = originX + x;
+                tile[tileOffset + x] = sourceX < width ? lut[lutIndex(pixels[rowOffset + sourceX])] : black;
+            }
+        }
+
+        return tile;
+    }
+
+    /**
+     * Works on the 6-bit color buckets of the lookup table: each channel's bucket is moved by
+     * the pixel position's Bayer offset, so the output only depends on the source bucket and
+     * the position. With a previous tile, a pixel also keeps its color while its source stays
+     * within {@link #STABLE_DELTA} of the color that produced it, so noise and compression
+     * artifacts around a bucket edge do not make it flicker. Slow fades still come through,
+     * since the comparison is against that color and not against the last frame.
+     * @param previousTile The same tile of the previous frame, or null
+     * @param anchors Per source pixel, the color the current output was computed from; null without history
+     */
+    private byte[] quantizeTileOrdered(int[] pixels, int width, int height, int originX, int originY,
+                                       byte[] previousTile, int[] anchors) {
+        byte[] tile = new byte[MapFrame.TILE_PIXELS];
+        byte black = match(0x000000);
+
+        for (int y = 0; y < MapFrame.MAP_SIZE; y++) {
+            int sourceY = originY + y;
+            int tileOffset = y * MapFrame.MAP_SIZE;
+
+            if (sourceY >= height) {
+                Arrays.fill(tile, tileOffset, tileOffset + MapFrame.MAP_SIZE, black);
+                continue;
+            }
+
+            int rowOffset = sourceY * width;
+            int offsetRow = (sourceY & 3) << 2;
+            for (int x = 0; x < MapFrame.MAP_SIZE; x++) {
+                int sourceX = originX + x;
+                if (sourceX >= width) {
+                    tile[tileOffset + x] = black;
+                    continue;
+                }
+
+                int rgb = pixels[rowOffset + sourceX];
+                if (anchors != null) {
+                    int anchor = anchors[rowOffset + sourceX];
+                    if (previousTile != null && isClose(rgb, anchor)) {
+                        tile[tileOffset + x] = previousTile[tileOffset + x];
+                        continue;
+                    }
+                    anchors[rowOffset + sourceX] = rgb;
+                }
+
+                int offset = ORDERED_OFFSETS[offsetRow | (sourceX & 3)];
+                int r = clampBucket(((rgb >>> 18) & 0x3F) + offset);
+                int g = clampBucket(((rgb >>> 10) & 0x3F) + offset);
+                int b = clampBucket(((rgb >>> 2) & 0x3F) + offset);
+                tile[tileOffset + x] = lut[(r << 12) | (g << 6) | b];
+            }
+        }
+
+        return tile;
+    }
+
+    private static boolean isClose(int rgb, int other) {
+        return Math.abs(((rgb >>> 16) & 0xFF) - ((other >>> 16) & 0xFF)) <= STABLE_DELTA
+            && Math.abs(((rgb >>> 8) & 0xFF) - ((other >>> 8) & 0xFF)) <= STABLE_DELTA
+            && Math.abs((rgb & 0xFF) - (other & 0xFF)) <= STABLE_DELTA;
+    }
+
+    private static int clampBucket(int bucket) {
+        return bucket < 0 ? 0 : bucket > 0x3F ? 0x3F : bucket;
+    }
+
+    /**
+     * Floyd-Steinberg within the tile; the error never crosses into neighbouring tiles
+     */
+    private byte[] quantizeTileDiffused(int[] pixels, int width, int height, int originX, int originY) {
+        byte[] tile = new byte[MapFrame.TILE_PIXELS];
+        byte black = match(0x000000);
+
+        // Error carried to the current and the next row, per channel, with a pixel of padding on both sides
+        int rowLength = (MapFrame.MAP_SIZE + 2) * 3;
+        int[] current = new int[rowLength];
+        int[] next = new int[rowLength];
+
+        for (int y = 0; y < MapFrame.MAP_SIZE; y++) {
+            int sourceY = originY + y;
+            int tileOffset = y * MapFrame.MAP_SIZE;
+
+            if (sourceY >= height) {
+                Arrays.fill(tile, tileOffset, tileOffset + MapFrame.MAP_SIZE, black);
+                continue;
+            }
+
+            int rowOffset = sourceY * width;
+            for (int x = 0; x < MapFrame.MAP_SIZE; x++) {
+                int sourceX = originX + x;
+                if (sourceX >= width) {
+                    tile[tileOffset + x] = black;
+                    continue;
+                }
+
+                int rgb = pixels[rowOffset + sourceX];
+                int e = (x + 1) * 3;
+                int r = clampChannel(((rgb >>> 16) & 0xFF) + (current[e] >> 4));
+                int g = clampChannel(((rgb >>> 8) & 0xFF) + (current[e + 1] >> 4));
+                int b = clampChannel((rgb & 0xFF) + (current[e + 2] >> 4));
+
+                byte color = lut[lutIndex((r << 16) | (g << 8) | b)];
+                tile[tileOffset + x] = color;
+
+                int actual = paletteRgb[color & 0xFF];
+                diffuse(current, next, e, r - ((actual >>> 16) & 0xFF));
+                diffuse(current, next, e + 1, g - ((actual >>> 8) & 0xFF));
+                diffuse(current, next, e + 2, b - (actual & 0xFF));
+            }
+
+            int[] swap = current;
+            current = next;
+            next = swap;
+            Arrays.fill(next, 0);
+        }
+
+        return tile;
+    }
+
+    /**
+     * Spreads one channel's error in sixteenths: 7 right, 3 below left, 5 below, 1 below right
+     */
+    private static void diffuse(int[] current, int[] next, int index, int error) {
+        current[index + 3] += error * 7;
+        next[index - 3] += error * 3;
+        next[index] += error * 5;
+        next[index + 3] += error;
+    }
+
+    private static int clampChannel(int value) {
+        return value < 0 ? 0 : value > 0xFF ? 0xFF : value;
+    }
+
+    /**
+     * Compares the lookup table against Bukkit's exact matching on random colors
+     * @param samples Number of random colors to test
+     * @param seed Random seed, so runs are repeatable
+     */
+    public AccuracyReport checkAccuracy(int samples, long seed) {
+        Random random = new Random(seed);
+        int exact = 0;
+        double totalError = 0;
+        double worstError = 0;
+
+        for (int i = 0; i < samples; i++) {
+            int rgb = random.nextInt(0x1000000);
+            byte expected = MapPalette.matchColor(new Color(rgb));
+            byte actual = match(rgb);
+
+            if (expected == actual) {
+                exact++;
+                continue;
+            }
+
+            // Both colors are valid palette entries, measure how far apart they are
+            double error = colorDistance(MapPalette.getColor(expected), MapPalette.getColor(actual));
+            totalError += error;
+            worstError = Math.max(worstError, error);
+        }
+
+        return new AccuracyReport(samples, exact, samples == 0 ? 0 : totalError / samples, worstError);
+    }
+
+    private static double colorDistance(Color a, Color b) {
+        int dr = a.getRed() - b.getRed();
+        int dg = a.getGreen() - b.getGreen();
+        int db = a.getBlue() - b.getBlue();
+        return Math.sqrt(dr * dr + dg * dg + db * db);
+    }
+
+    private class BuildLutTask extends RecursiveAction {
+        private final int from, to;
+
+        BuildLutTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LUT_BUILD_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    lut[i] = MapPalette.matchColor(bucketColor(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BuildLutTask(from, middle), new BuildLutTask(middle, to));
+        }
+    }
+
+    private class QuantizeTilesTask extends RecursiveAction {
+        private final int[] pixels;
+        private final int width, height, columns;
+        private final DitherMode dither;
+        private final MapFrame previous;
+        private final int[] anchors;
+        private final byte[][] tiles;
+        private final long[] hashes;
+        private final int from, to;
+
+        QuantizeTilesTask(int[] pixels, int width, int height, int columns, DitherMode dither, MapFrame previous,
+                          int[] anchors, byte[][] tiles, long[] hashes, int from, int to) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.columns = columns;
+            this.dither = dither;
+            this.previous = previous;
+            this.anchors = anchors;
+            this.tiles = tiles;
+            this.hashes = hashes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= TILE_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    int originX = (i % columns) * MapFrame.MAP_SIZE;
+                    int originY = (i / columns) * MapFrame.MAP_SIZE;
+                    byte[] previousTile = previous != null ? previous.getTile(i) : null;
+                    tiles[i] = quantizeTile(pixels, width, height, originX, originY, dither, previousTile, anchors);
+                    hashes[i] = MapFrame.hashTile(tiles[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new QuantizeTilesTask(pixels, width, height, columns, dither, previous, anchors, tiles, hashes, from, middle),
+                      new QuantizeTilesTask(pixels, width, height, columns, dither, previous, anchors, tiles, hashes, middle, to));
+        }
+    }
+
+    /**
+     * The previous frame of one video and the source colors behind it, for temporally stable
+     * ordered dithering. Use one per video and pass it to each {@link #quantize} call of that
+     * video, in frame order.
+     */
+    public static class FrameHistory {
+        private MapFrame previous;
+        private int[] anchors;
+    }
+
+    /**
+     * Result of {@link #checkAccuracy(int, long)}
+     */
+    public static class AccuracyReport {
+        private final int samples;
+        private final int exactMatches;
+        private final double meanError;
+        private final double worstError;
+
+        AccuracyReport(int samples, int exactMatches, double meanError, double worstError) {
+            this.samples = samples;
+            this.exactMatches = exactMatches;
+            this.meanError = meanError;
+            this.worstError = worstError;
+        }
+
+        public int getSamples() {
+            return samples;
+        }
+
+        public int getExactMatches() {
+            return exactMatches;
+        }
+
+        /**
+         * @return Average RGB distance between LUT and exact palette color, over all samples
+         */
+        public double getMeanError() {
+            return meanError;
+        }
+
+        public double getWorstError() {
+            return worstError;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d exact (%.2f%%), mean error %.2f, worst error %.2f",
+                exactMatches, samples, samples == 0 ? 100.0 : exactMatches * 100.0 / samples, meanError, worstError);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.vibedrochka.video;
+
+/**
+ * A single video frame, pre-split into 128x128 map tiles and converted to map palette colors.
+ * Conversion happens once at ingestion so renderers only have to copy bytes.
+ * Each tile also carries a content hash, so playback can tell which tiles actually changed.
+ */
+public class MapFrame {
+
+    public static final int MAP_SIZE = 128;
+    public static final int TILE_PIXELS = MAP_SIZE * MAP_SIZE;
+
+    private final int columns;
+    private final int rows;
+    private final byte[][] tiles;
+    private final long[] tileHashes;
+
+    public MapFrame(int columns, int rows, byte[][] tiles) {
+        this(columns, rows, tiles, hashTiles(tiles));
+    }
+
+    public MapFrame(int columns, int rows, byte[][] tiles, long[] tileHashes) {
+        if (tiles.length != columns * rows || tileHashes.length != tiles.length) {
+            throw new IllegalArgumentException("Expected " + (columns * rows) + " tiles, got " + tiles.length);
+        }
+        this.columns = columns;
+        this.rows = rows;
+        this.tiles = tiles;
+        this.tileHashes = tileHashes;
+    }
+
+    private static long[] hashTiles(byte[][] tiles) {
+        long[] hashes = new long[tiles.length];
+        for (int i = 0; i < tiles.length; i++) {
+            hashes[i] = hashTile(tiles[i]);
+        }
+        return hashes;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a tile's palette bytes. Two tiles with the same hash are treated
+     * as identical, which at 64 bits is safe for any realistic number of tiles.
+     */
+    public static long hashTile(byte[] tile) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : tile) {
+            hash ^= (b & 0xFF);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * @return Palette bytes of the tile at the given grid position, row-major 128x128
+     */
+    public byte[] getTile(int gridX, int gridY) {
+        return tiles[gridY * columns + gridX];
+    }
+
+    /**
+     * @return Content hash of the tile at the given grid position, see {@link #hashTile(byte[])}
+     */
+    public long getTileHash(int gridX, int gridY) {
+        return tileHashes[gridY * columns + gridX];
+    }
+
+    /**
+     * @return Palette bytes of a tile by its row-major index
+     */
+    public byte[] getTile(int index) {
+        return tiles[index];
+    }
+
+    public long getTileHash(int index) {
+        return tileHashes[index];
+    }
+
+    public int getTileCount() {
+        return tiles.length;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,158 @@
+package com.vibedrochka.video;
+
+import com.vibedrochka.VibeDrochkaPlugin;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Sends map updates of all video walls within a per-player and a server-wide budget.
+ * Sessions only mark which tiles each viewer is missing; once per tick this scheduler
+ * splits the server budget evenly between the players waiting for updates, splits each
+ * player's share evenly between the walls they see, and lets every wall send its most
+ * urgent tiles. When the budget runs short, walls update less often instead of flooding
+ * connections. Players whose quality a session lowered are only served on their refresh ticks.
+ */
+public class MapSendScheduler implements Runnable {
+
+    private final VibeDrochkaPlugin plugin;
+    private final VideoManager videoManager;
+    private final int maxMapsPerPlayer;
+    private final int maxMapsPerTick;
+    private long tick;
+
+    public MapSendScheduler(VibeDrochkaPlugin plugin, VideoManager videoManager) {
+        this.plugin = plugin;
+        this.videoManager = videoManager;
+        this.maxMapsPerPlayer = Math.max(1, plugin.getConfig().getInt("playback.max-maps-per-player-tick", 10));
+        this.maxMapsPerTick = Math.max(1, plugin.getConfig().getInt("playback.max-maps-per-tick", 200));
+    }
+
+    public void start() {
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+    }
+
+    @Override
+    public void run() {
+        tick++;
+
+        // Everything each player is waiting for, per wall
+        Map<UUID, List<ViewerState>> pendingByPlayer = new LinkedHashMap<>();
+        for (VideoSession session : videoManager.getActiveSessions().values()) {
+            if (session.isSuspended()) {
+                continue;
+            }
+            for (ViewerState viewer : session.getViewers()) {
+                if (viewer.getStaleCount() > 0 && viewer.isDue(tick)) {
+                    pendingByPlayer.computeIfAbsent(viewer.getPlayer().getUniqueId(), id -> new ArrayList<>()).add(viewer);
+                }
+            }
+        }
+        if (pendingByPlayer.isEmpty()) {
+            return;
+        }
+
+        distribute(new ArrayList<>(pendingByPlayer.values()), maxMapsPerPlayer, maxMapsPerTick, tick,
+                   (viewer, share) -> viewer.getSession().sendUpdates(viewer, share, tick));
+    }
+
+    /**
+     * Splits the server budget between players and each player's share between the walls they see
+     * @param players Viewers waiting for updates, one list of walls per player
+     * @param tick Current tick, rotates who gets the remainders
+     * @param sender Sends a viewer their share of maps
+     */
+    static void distribute(List<List<ViewerState>> players, int maxMapsPerPlayer, int maxMapsPerTick, long tick,
+                           ObjIntConsumer<ViewerState> sender) {
+        int[] demands = new int[players.size()];
+        for (int p = 0; p < demands.length; p++) {
+            int stale = 0;
+            for (ViewerState viewer : players.get(p)) {
+                stale += viewer.getSendableCount();
+            }
+            demands[p] = Math.min(maxMapsPerPlayer, stale);
+        }
+        int[] playerShares = fairShare(demands, maxMapsPerTick, (int) tick);
+
+        for (int p = 0; p < demands.length; p++) {
+            List<ViewerState> walls = players.get(p);
+            if (playerShares[p] == 0 || !walls.get(0).getPlayer().isOnline()) {
+                continue;
+            }
+
+            int[] wallDemands = new int[walls.size()];
+            for (int w = 0; w < wallDemands.length; w++) {
+                wallDemands[w] = walls.get(w).getSendableCount();
+            }
+            int[] wallShares = fairShare(wallDemands, playerShares[p], (int) tick);
+
+            for (int w = 0; w < wallShares.length; w++) {
+                if (wallShares[w] > 0) {
+                    sender.accept(walls.get(w), wallShares[w]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Number of times the scheduler has run; sessions use it to age their stale tiles
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Splits a budget as evenly as possible. Nobody gets more than they asked for, and what
+     * one leaves unused goes to the others.
+     * @param demands What each claimant asks for
+     * @param budget Total to hand out
+     * @param rotation Decides who gets the remainder that cannot be split evenly; rotate it
+     *                 between calls so the same claimants are not always left out
+     * @return Share of each claimant
+     */
+    static int[] fairShare(int[] demands, int budget, int rotation) {
+        int count = demands.length;
+        int[] shares = new int[count];
+        int remaining = budget;
+        int open = 0;
+        for (int demand : demands) {
+            if (demand > 0) {
+                open++;
+            }
+        }
+
+        while (remaining > 0 && open > 0) {
+            int each = remaining / open;
+            if (each == 0) {
+                // Fewer units left than claimants: one each, starting at the rotation
+                int start = Math.floorMod(rotation, count);
+                for (int i = 0; i < count && remaining > 0; i++) {
+                    int claimant = (start + i) % count;
+                    if (shares[claimant] < demands[claimant]) {
+                        shares[claimant]++;
+                        remaining--;
+                    }
+                }
+                break;
+            }
+
+            for (int claimant = 0; claimant < count; claimant++) {
+                int wanted = demands[claimant] - shares[claimant];
+                if (wanted <= 0) {
+                    continue;
+                }
+                int given = Math.min(each, wanted);
+                shares[claimant] += given;
+                remaining -= given;
+                if (given == wanted) {
+                    open--;
+                }
+            }
+        }
+        return shares;
+    }
+}
@@ -0,0 +1,271 @@
+package com.vibedrochka.video;
+
+import com.vibedrochka.VibeDrochkaPlugin;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Collects playback, memory and processing metrics of all video walls.
+ * Once per second the current values are sent to Flight Recorder, and every configured
+ * interval a snapshot is appended to a metrics file. Sessions record their own counters
+ * while they tick, so collecting only reads them.
+ */
+public class MetricsReporter implements Runnable {
+
+    private static final long SAMPLE_INTERVAL_TICKS = 20;
+
+    private final VibeDrochkaPlugin plugin;
+    private final VideoManager videoManager;
+    private final File file;
+    private final long fileIntervalSamples;
+
+    // Counters of sessions that stopped; main thread only
+    private final SessionMetrics retired = new SessionMetrics();
+    private long samples;
+
+    public MetricsReporter(VibeDrochkaPlugin plugin, VideoManager videoManager) {
+        this.plugin = plugin;
+        this.videoManager = videoManager;
+
+        long fileIntervalSeconds = plugin.getConfig().getLong("metrics.file-interval-seconds", 60);
+        this.fileIntervalSamples = Math.max(0, fileIntervalSeconds);
+        this.file = new File(plugin.getVideoFolder(), plugin.getConfig().getString("metrics.file", "metrics.log"));
+    }
+
+    public void start() {
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this, SAMPLE_INTERVAL_TICKS, SAMPLE_INTERVAL_TICKS);
+    }
+
+    @Override
+    public void run() {
+        samples++;
+        boolean writeFile = fileIntervalSamples > 0 && samples % fileIntervalSamples == 0;
+
+        VideoMetricsEvent event = new VideoMetricsEvent();
+        if (!writeFile && !event.isEnabled()) {
+            return;
+        }
+
+        Snapshot snapshot = snapshot();
+        if (event.shouldCommit()) {
+            event.playingSessions = snapshot.playingSessions;
+            event.suspendedSessions = snapshot.suspendedSessions;
+            event.tickNanos = (long) snapshot.tickNanos;
+            event.mapsPerSecond = snapshot.mapsPerSecond;
+            event.mapsSent = snapshot.totals.getMapsSent();
+            event.bytesSent = snapshot.totals.getBytesSent();
+            event.droppedFrames = snapshot.totals.getDroppedFrames();
+            event.heapBytes = snapshot.heapBytes;
+            event.offHeapBytes = snapshot.offHeapBytes;
+            event.frameCacheBytes = snapshot.frameCacheBytes;
+            event.frameCacheHits = snapshot.frameCacheHits;
+            event.frameCacheMisses = snapshot.frameCacheMisses;
+            event.queuedJobs = snapshot.queuedJobs;
+            event.runningJobs = snapshot.runningJobs;
+            event.commit();
+        }
+
+        if (writeFile) {
+            List<String> lines = formatLines(snapshot);
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> append(lines));
+        }
+    }
+
+    /**
+     * Adds the counters of a session that stopped to the totals
+     */
+    public void retire(SessionMetrics metrics) {
+        retired.add(metrics);
+    }
+
+    /**
+     * Collects the current metrics. Main thread only.
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.totals.add(retired);
+
+        for (VideoSession session : videoManager.getActiveSessions().values()) {
+            SessionMetrics metrics = session.getMetrics();
+            snapshot.totals.add(metrics);
+            snapshot.heapBytes += session.getHeapBytes();
+            if (session.isSuspended()) {
+                snapshot.suspendedSessions++;
+                continue;
+            }
+            snapshot.playingSessions++;
+            snapshot.tickNanos += metrics.getAverageTickNanos();
+            snapshot.mapsPerSecond += metrics.getMapsPerSecond();
+        }
+
+        for (FrameStore store : videoManager.getFrameStores()) {
+            snapshot.heapBytes += store.getHeapBytes();
+            snapshot.offHeapBytes += store.getOffHeapBytes();
+        }
+
+        FrameCache frameCache = videoManager.getFrameCache();
+        snapshot.frameCacheBytes = frameCache.getBytes();
+        snapshot.frameCacheHits = frameCache.getHits();
+        snapshot.frameCacheMisses = frameCache.getMisses();
+        snapshot.frameCacheEvictions = frameCache.getEvictions();
+        snapshot.heapBytes += snapshot.frameCacheBytes;
+
+        ProcessingQueue queue = videoManager.getProcessingQueue();
+        snapshot.queuedJobs = queue.getQueuedCount();
+        snapshot.runningJobs = queue.getRunningCount();
+        snapshot.activeDownloads = videoManager.getDownloader().getActiveCount();
+        snapshot.tps = videoManager.getTickMonitor().getTps();
+        return snapshot;
+    }
+
+    private List<String> formatLines(Snapshot snapshot) {
+        String time = Instant.now().toString();
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format(Locale.ROOT,
+            "%s server tps=%.2f playing=%d suspended=%d tick_us=%.1f maps_per_s=%.1f maps_sent=%d bytes_sent=%d" +
+            " dropped_frames=%d heap_bytes=%d off_heap_bytes=%d frame_cache_bytes=%d frame_cache_hits=%d frame_cache_misses=%d" +
+            " frame_cache_evictions=%d queued_jobs=%d running_jobs=%d downloads=%d",
+            time, snapshot.tps, snapshot.playingSessions, snapshot.suspendedSessions, snapshot.tickNanos / 1000.0,
+            snapshot.mapsPerSecond, snapshot.totals.getMapsSent(), snapshot.totals.getBytesSent(),
+            snapshot.totals.getDroppedFrames(), snapshot.heapBytes, snapshot.offHeapBytes,
+            snapshot.frameCacheBytes, snapshot.frameCacheHits, snapshot.frameCacheMisses, snapshot.frameCacheEvictions,
+            snapshot.queuedJobs, snapshot.runningJobs, snapshot.activeDownloads));
+
+        for (VideoSession session : videoManager.getActiveSessions().values()) {
+            SessionMetrics metrics = session.getMetrics();
+            lines.add(String.format(Locale.ROOT,
+                "%s session=%s video=%s grid=%dx%d state=%s viewers=%d degraded=%d tick_us=%.1f peak_tick_us=%.1f maps_per_s=%.1f" +
+                " pending=%d maps_sent=%d bytes_sent=%d dropped_frames=%d heap_bytes=%d",
+                time, session.getSessionId(), session.getVideoData().getName(),
+                session.getVideoData().getWidth(), session.getVideoData().getHeight(),
+                session.isSuspended() ? "suspended" : session.isBuffering() ? "buffering" : session.isPlaying() ? "playing" : "paused",
+                session.getViewerCount(), session.getDegradedViewers(), metrics.getAverageTickNanos() / 1000.0, metrics.takePeakTickNanos() / 1000.0,
+                metrics.getMapsPerSecond(), session.getPendingUpdates(), metrics.getMapsSent(), metrics.getBytesSent(), metrics.getDroppedFrames(),
+                session.getHeapBytes()));
+        }
+        return lines;
+    }
+
+    private void append(List<String> lines) {
+        try (Writer writer = new FileWriter(file, true)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write(System.lineSeparator());
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to write metrics to " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Plugin-wide metrics at one point in time
+     */
+    public static class Snapshot {
+
+        private final SessionMetrics totals = new SessionMetrics();
+        private int playingSessions;
+        private int suspendedSessions;
+        private double tickNanos;
+        private double mapsPerSecond;
+        private long heapBytes;
+        private long offHeapBytes;
+        private long frameCacheBytes;
+        private long frameCacheHits;
+        private long frameCacheMisses;
+        private long frameCacheEvictions;
+        private int queuedJobs;
+        private int runningJobs;
+        private int activeDownloads;
+        private double tps;
+
+        /**
+         * @return Counters of every session since the server started, stopped ones included
+         */
+        public SessionMetrics getTotals() {
+            return totals;
+        }
+
+        public int getPlayingSessions() {
+            return playingSessions;
+        }
+
+        public int getSuspendedSessions() {
+            return suspendedSessions;
+        }
+
+        /**
+         * @return Main-thread time per tick of all playing walls together, over roughly the last second
+         */
+        public double getTickNanos() {
+            return tickNanos;
+        }
+
+        public double getMapsPerSecond() {
+            return mapsPerSecond;
+        }
+
+        /**
+         * @return Frame data held on the Java heap by frame stores, the frame cache and the sessions' prepared frames
+         */
+        public long getHeapBytes() {
+            return heapBytes;
+        }
+
+        /**
+         * @return Compressed frame data on disk, in spool files and opened cache entries
+         */
+        public long getOffHeapBytes() {
+            return offHeapBytes;
+        }
+
+        /**
+         * @return Heap bytes of the decoded frames in the {@link FrameCache}
+         */
+        public long getFrameCacheBytes() {
+            return frameCacheBytes;
+        }
+
+        public long getFrameCacheHits() {
+            return frameCacheHits;
+        }
+
+        public long getFrameCacheMisses() {
+            return frameCacheMisses;
+        }
+
+        public long getFrameCacheEvictions() {
+            return frameCacheEvictions;
+        }
+
+        /**
+         * @return Share of frame lookups that found the frame already decoded, 0 to 1
+         */
+        public double getFrameCacheHitRate() {
+            long lookups = frameCacheHits + frameCacheMisses;
+            return lookups == 0 ? 0 : frameCacheHits / (double) lookups;
+        }
+
+        public int getQueuedJobs() {
+            return queuedJobs;
+        }
+
+        public int getRunningJobs() {
+            return runningJobs;
+        }
+
+        public int getActiveDownloads() {
+            return activeDownloads;
+        }
+
+        public double getTps() {
+            return tps;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.vibedrochka.video;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall-clock playback position for a video.
+ * The source frame to show is derived from elapsed real time rather than from a tick
+ * counter, so framerates that do not divide 20 play at the right speed, and a lagging
+ * server skips frames instead of slowing the video down.
+ *
+ * {@link #advance(long)} is meant to be called once per server tick. Above 20 fps some frames
+ * are never due on a tick, and below 20 fps some frames stay on screen for several ticks;
+ * only skips and repeats beyond that are counted as dropped and duplicated.
+ */
+public class PlaybackClock {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long NANOS_PER_TICK = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int TICKS_PER_SECOND = 20;
+
+    private final int framerate;
+    // Ticks a frame can stay on screen after the one it was first shown on, when every tick is on time
+    private final int plannedRepeats;
+    private long startNanos;
+    private long pausedAtNanos = -1;
+    private long lastFrame = -1;
+    private long lastAdvanceNanos;
+    private int repeats;
+
+    private long presentedFrames;
+    private long droppedFrames;
+    private long duplicatedFrames;
+
+    public PlaybackClock(int framerate) {
+        this.framerate = framerate;
+        this.plannedRepeats = (TICKS_PER_SECOND + framerate - 1) / framerate - 1;
+    }
+
+    /**
+     * Starts (or restarts) the clock so that frame 0 is due now
+     */
+    public void start(long nowNanos) {
+        start(nowNanos, 0);
+    }
+
+    /**
+     * Starts the clock so that the given frame is due now, e.g. to continue a saved position
+     */
+    public void start(long nowNanos, long startFrame) {
+        // Round up so frameAt(nowNanos) lands exactly on startFrame, not one before it
+        startNanos = nowNanos - (startFrame * NANOS_PER_SECOND + framerate - 1) / framerate;
+        pausedAtNanos = -1;
+        lastFrame = -1;
+        lastAdvanceNanos = nowNanos;
+        repeats = 0;
+    }
+
+    /**
+     * @return The absolute frame number due at the given time; it keeps counting past the end of the video
+     */
+    public long frameAt(long nowNanos) {
+        long elapsed = (pausedAtNanos >= 0 ? pausedAtNanos : nowNanos) - startNanos;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return elapsed / NANOS_PER_SECOND * framerate + (elapsed % NANOS_PER_SECOND) * framerate / NANOS_PER_SECOND;
+    }
+
+    /**
+     * Advances to the frame due now. Frames skipped because ticks were late count as dropped;
+     * a frame kept on screen for more ticks than the framerate calls for counts as duplicated.
+     * @return The absolute frame number to present, or -1 if the last presented frame is still current
+     */
+    public long advance(long nowNanos) {
+        long frame = frameAt(nowNanos);
+        if (frame == lastFrame) {
+            if (pausedAtNanos < 0 && ++repeats > plannedRepeats) {
+                duplicatedFrames++;
+            }
+            lastAdvanceNanos = nowNanos;
+            return -1;
+        }
+
+        if (lastFrame >= 0 && frame > lastFrame + 1) {
+            // On-time ticks would have shown one frame each, so only the frames of the ticks
+            // that were missed are dropped; the rest are never due on a tick
+            long ticks = Math.max(1, (nowNanos - lastAdvanceNanos + NANOS_PER_TICK / 2) / NANOS_PER_TICK);
+            droppedFrames += Math.min(frame - lastFrame - 1, ticks - 1);
+        }
+        lastFrame = frame;
+        lastAdvanceNanos = nowNanos;
+        repeats = 0;
+        presentedFrames++;
+        return frame;
+    }
+
+    public void pause(long nowNanos) {
+        if (pausedAtNanos < 0) {
+            pausedAtNanos = nowNanos;
+        }
+    }
+
+    /**
+     * Continues from where the clock was paused, as if no time had passed
+     */
+    public void resume(long nowNanos) {
+        if (pausedAtNanos >= 0) {
+            startNanos += nowNanos - pausedAtNanos;
+            lastAdvanceNanos = Math.min(lastAdvanceNanos, pausedAtNanos) + nowNanos - pausedAtNanos;
+            pausedAtNanos = -1;
+        }
+    }
+
+    public boolean isPaused() {
+        return pausedAtNanos >= 0;
+    }
+
+    public int getFramerate() {
+        return framerate;
+    }
+
+    public long getPresentedFrames() {
+        return presentedFrames;
+    }
+
+    /**
+     * @return Frames skipped because ticks were late, not counting the ones a framerate above 20 always skips
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * @return Ticks that repeated a frame beyond what a framerate below 20 always repeats,
+     *         e.g. ticks running back to back while the server catches up
+     */
+    public long getDuplicatedFrames() {
+        return duplicatedFrames;
+    }
+}
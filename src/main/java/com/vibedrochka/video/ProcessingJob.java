@@ -0,0 +1,152 @@
+package com.vibedrochka.video;
+
+import org.bukkit.entity.Player;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * One queued request to download and process a video.
+ * Jobs are ordered by priority first and submission order second. Progress is updated
+ * by the worker and read from the main thread, e.g. by {@code /videdrochka queue}.
+ */
+public class ProcessingJob implements Runnable, Comparable<ProcessingJob> {
+
+    public enum State {
+        QUEUED, DOWNLOADING, PROCESSING
+    }
+
+    private final ProcessingQueue queue;
+    private final int id;
+    private final int priority;
+    private final VideoData videoData;
+    private final Player player;
+
+    private volatile State state = State.QUEUED;
+    private volatile int decodedFrames;
+    private volatile int totalFrames = -1;
+    private volatile boolean cancelled;
+
+    // Guarded by this job
+    private Thread worker;
+    private FrameDecoder decoder;
+
+    ProcessingJob(ProcessingQueue queue, int id, int priority, VideoData videoData, Player player) {
+        this.queue = queue;
+        this.id = id;
+        this.priority = priority;
+        this.videoData = videoData;
+        this.player = player;
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            worker = Thread.currentThread();
+        }
+
+        try {
+            queue.process(this);
+        } finally {
+            synchronized (this) {
+                worker = null;
+                decoder = null;
+            }
+            // Don't leak a cancellation interrupt into the next job on this thread
+            Thread.interrupted();
+            queue.finished(this);
+        }
+    }
+
+    /**
+     * Cancels the job. A queued job never starts; a running one has its download
+     * interrupted and its FFmpeg process killed.
+     */
+    public void cancel() {
+        synchronized (this) {
+            cancelled = true;
+            if (decoder != null) {
+                decoder.close();
+            }
+            if (worker != null) {
+                worker.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Registers the running FFmpeg process, so {@link #cancel()} can kill it
+     */
+    void attachDecoder(FrameDecoder decoder) {
+        synchronized (this) {
+            if (cancelled) {
+                decoder.close();
+                throw new CancellationException();
+            }
+            this.decoder = decoder;
+        }
+    }
+
+    /**
+     * @throws CancellationException If the job has been cancelled
+     */
+    void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    void setProgress(int decodedFrames, int totalFrames) {
+        this.decodedFrames = decodedFrames;
+        this.totalFrames = totalFrames;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public VideoData getVideoData() {
+        return videoData;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getDecodedFrames() {
+        return decodedFrames;
+    }
+
+    /**
+     * @return Expected frame count, or -1 while it is not known
+     */
+    public int getTotalFrames() {
+        return totalFrames;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public int compareTo(ProcessingJob other) {
+        if (priority != other.priority) {
+            return Integer.compare(other.priority, priority);
+        }
+        return Integer.compare(id, other.id);
+    }
+}
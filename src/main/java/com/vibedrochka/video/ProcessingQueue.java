@@ -0,0 +1,183 @@
+package com.vibedrochka.video;
+
+import com.vibedrochka.VibeDrochkaPlugin;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded queue of video processing jobs.
+ * A fixed number of low-priority workers runs the jobs, highest priority first; each
+ * player may only have a limited number of jobs queued or running. Workers back off
+ * between frames while the server's TPS is below the configured minimum.
+ */
+public class ProcessingQueue {
+
+    public static final int PRIORITY_NORMAL = 0;
+    public static final int PRIORITY_HIGH = 10;
+
+    private static final long THROTTLE_SLEEP_MILLIS = 50;
+
+    private final VibeDrochkaPlugin plugin;
+    private final VideoManager videoManager;
+    private final ThreadPoolExecutor executor;
+    private final int maxJobsPerPlayer;
+    private final int maxQueued;
+    private final double minTps;
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final Map<Integer, ProcessingJob> jobs = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    public ProcessingQueue(VibeDrochkaPlugin plugin, VideoManager videoManager) {
+        this.plugin = plugin;
+        this.videoManager = videoManager;
+        this.maxJobsPerPlayer = Math.max(1, plugin.getConfig().getInt("processing.max-jobs-per-player", 2));
+        this.maxQueued = Math.max(1, plugin.getConfig().getInt("processing.max-queued", 10));
+        this.minTps = plugin.getConfig().getDouble("processing.min-tps", 18.0);
+
+        int workers = Math.max(1, plugin.getConfig().getInt("processing.workers", 1));
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "VibeDrochka-Processor-" + threadIndex.getAndIncrement());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+    }
+
+    /**
+     * Queues a video for processing. Call {@link #canSubmit(Player)} first.
+     * @return The new job
+     */
+    public ProcessingJob submit(VideoData videoData, Player player) {
+        int priority = player.hasPermission("vibedrochka.priority") ? PRIORITY_HIGH : PRIORITY_NORMAL;
+        ProcessingJob job = new ProcessingJob(this, nextId.getAndIncrement(), priority, videoData, player);
+        jobs.put(job.getId(), job);
+        executor.execute(job);
+        return job;
+    }
+
+    /**
+     * @return Why the player cannot queue another video, or null if they can
+     */
+    public String canSubmit(Player player) {
+        if (getJobs(player.getUniqueId()).size() >= maxJobsPerPlayer) {
+            return "You already have " + maxJobsPerPlayer + " videos processing, wait for one to finish or cancel it.";
+        }
+        if (executor.getQueue().size() >= maxQueued) {
+            return "The processing queue is full, try again later.";
+        }
+        return null;
+    }
+
+    void process(ProcessingJob job) {
+        videoManager.processVideo(job);
+    }
+
+    void finished(ProcessingJob job) {
+        jobs.remove(job.getId());
+    }
+
+    /**
+     * Cancels a job, removing it from the queue if it has not started yet
+     * @return Whether the job was still waiting; a running job reports its cancellation itself
+     */
+    public boolean cancel(ProcessingJob job) {
+        job.cancel();
+        if (executor.remove(job)) {
+            finished(job);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Blocks the calling worker while the server is running below the minimum TPS
+     */
+    void throttle(ProcessingJob job) {
+        TickMonitor tickMonitor = videoManager.getTickMonitor();
+        while (tickMonitor.getTps() < minTps) {
+            job.checkCancelled();
+            try {
+                Thread.sleep(THROTTLE_SLEEP_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                job.checkCancelled();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return Position of a queued job among the waiting jobs, starting at 1, or 0 if it is running
+     */
+    public int getQueuePosition(ProcessingJob job) {
+        if (job.getState() != ProcessingJob.State.QUEUED) {
+            return 0;
+        }
+        int position = 1;
+        for (Runnable waiting : executor.getQueue()) {
+            if (waiting != job && ((ProcessingJob) waiting).compareTo(job) < 0) {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * @return All queued and running jobs, oldest first
+     */
+    public List<ProcessingJob> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    public List<ProcessingJob> getJobs(UUID playerId) {
+        List<ProcessingJob> result = new ArrayList<>();
+        for (ProcessingJob job : getJobs()) {
+            if (job.getPlayer().getUniqueId().equals(playerId)) {
+                result.add(job);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Number of jobs waiting for a worker
+     */
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return Number of jobs being downloaded or processed
+     */
+    public int getRunningCount() {
+        return executor.getActiveCount();
+    }
+
+    public ProcessingJob getJob(int id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Cancels every job and stops the workers
+     */
+    public void shutdown() {
+        for (ProcessingJob job : getJobs()) {
+            job.cancel();
+        }
+        executor.shutdownNow();
+        jobs.clear();
+    }
+}
@@ -0,0 +1,140 @@
+package com.vibedrochka.video;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counters for the main-thread cost of playing a video wall.
+ * Each session updates its own instance once per tick, and the {@link MapSendScheduler}
+ * adds the maps it sends for the session; when the session stops, its counters are added
+ * to the plugin-wide totals. Only used from the main thread.
+ */
+public class SessionMetrics {
+
+    /**
+     * Estimated size of one map update before compression: every pixel of the map plus the packet header
+     */
+    public static final int MAP_PACKET_BYTES = MapFrame.TILE_PIXELS + 16;
+
+    private static final long TICKS_PER_SECOND = 20;
+    private static final double SMOOTHING = 0.05; // Roughly the last second of ticks
+
+    private long ticks;
+    private long tickNanos;
+    private long peakTickNanos;
+    private long mapsSent;
+    private long droppedFrames;
+    private double averageTickNanos;
+    private double averageMapsPerTick;
+
+    // Sent since the last tick was recorded
+    private int pendingMaps;
+    private long pendingSendNanos;
+    private int mapsSentLastTick;
+
+    /**
+     * Records maps sent for the session
+     * @param maps Number of maps sent
+     * @param nanos Main-thread time sending took
+     */
+    public void recordSends(int maps, long nanos) {
+        pendingMaps += maps;
+        pendingSendNanos += nanos;
+    }
+
+    /**
+     * Records one playback tick, together with the maps sent since the previous one
+     * @param nanos Main-thread time the tick took
+     * @param totalDroppedFrames Frames the session's clock has skipped so far
+     */
+    public void recordTick(long nanos, long totalDroppedFrames) {
+        long total = nanos + pendingSendNanos;
+        ticks++;
+        tickNanos += total;
+        peakTickNanos = Math.max(peakTickNanos, total);
+        mapsSent += pendingMaps;
+        droppedFrames = totalDroppedFrames;
+        averageTickNanos += (total - averageTickNanos) * SMOOTHING;
+        averageMapsPerTick += (pendingMaps - averageMapsPerTick) * SMOOTHING;
+
+        mapsSentLastTick = pendingMaps;
+        pendingMaps = 0;
+        pendingSendNanos = 0;
+    }
+
+    /**
+     * Adds the counters of another instance, e.g. a session that stopped
+     */
+    public void add(SessionMetrics other) {
+        ticks += other.ticks;
+        tickNanos += other.tickNanos;
+        peakTickNanos = Math.max(peakTickNanos, other.peakTickNanos);
+        mapsSent += other.mapsSent;
+        droppedFrames += other.droppedFrames;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return Main-thread time spent in all ticks so far, sending included
+     */
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * @return Main-thread time per tick over roughly the last second
+     */
+    public double getAverageTickNanos() {
+        return averageTickNanos;
+    }
+
+    /**
+     * @return Longest tick since the last call, which starts a new measurement
+     */
+    public long takePeakTickNanos() {
+        long peak = peakTickNanos;
+        peakTickNanos = 0;
+        return peak;
+    }
+
+    /**
+     * @return Maps sent between the last two ticks
+     */
+    public int getMapsSentLastTick() {
+        return mapsSentLastTick;
+    }
+
+    public long getMapsSent() {
+        return mapsSent;
+    }
+
+    /**
+     * @return Estimated bytes of map data sent, see {@link #MAP_PACKET_BYTES}
+     */
+    public long getBytesSent() {
+        return mapsSent * MAP_PACKET_BYTES;
+    }
+
+    /**
+     * @return Maps sent per second over roughly the last second
+     */
+    public double getMapsPerSecond() {
+        return averageMapsPerTick * TICKS_PER_SECOND;
+    }
+
+    /**
+     * @return Source frames skipped because they were due while the server was behind
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * @return Share of the 50 ms tick budget this session uses on average, from 0 to 1
+     */
+    public double getTickShare() {
+        return averageTickNanos / TimeUnit.MILLISECONDS.toNanos(50);
+    }
+}
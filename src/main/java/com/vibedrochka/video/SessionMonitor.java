@@ -0,0 +1,54 @@
+package com.vibedrochka.video;
+
+import com.vibedrochka.VibeDrochkaPlugin;
+import org.bukkit.Chunk;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+/**
+ * Suspends video sessions nobody can see and wakes them up again.
+ * A session is suspended as soon as one of its chunks unloads, or when a periodic check
+ * finds no player within view radius. Suspended sessions have no timer running at all.
+ */
+public class SessionMonitor implements Listener, Runnable {
+
+    private final VibeDrochkaPlugin plugin;
+    private final VideoManager videoManager;
+
+    public SessionMonitor(VibeDrochkaPlugin plugin, VideoManager videoManager) {
+        this.plugin = plugin;
+        this.videoManager = videoManager;
+    }
+
+    /**
+     * Starts the periodic audience check
+     */
+    public void start() {
+        long interval = Math.max(1, plugin.getConfig().getLong("playback.audience-check-interval", 20));
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this, interval, interval);
+    }
+
+    @Override
+    public void run() {
+        for (VideoSession session : videoManager.getActiveSessions().values()) {
+            boolean visible = session.isLoaded() && session.hasAudience();
+
+            if (visible && session.isSuspended()) {
+                session.wake();
+            } else if (!visible && !session.isSuspended()) {
+                session.suspend();
+            }
+        }
+    }
+
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        for (VideoSession session : videoManager.getActiveSessions().values()) {
+            if (!session.isSuspended() && session.isInChunk(chunk.getWorld(), chunk.getX(), chunk.getZ())) {
+                session.suspend();
+            }
+        }
+    }
+}
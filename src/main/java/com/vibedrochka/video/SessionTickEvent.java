@@ -0,0 +1,39 @@
+package com.vibedrochka.video;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one playback tick of a video wall on the main thread
+ */
+@Name("com.vibedrochka.SessionTick")
+@Label("Video Wall Tick")
+@Category({"VibeDrochka", "Playback"})
+@Description("Main-thread work of one video wall during one server tick")
+@StackTrace(false)
+class SessionTickEvent extends Event {
+
+    @Label("Session")
+    String sessionId;
+
+    @Label("Video")
+    String video;
+
+    @Label("Frame")
+    int frame;
+
+    @Label("Viewers")
+    int viewers;
+
+    @Label("Maps Sent")
+    @Description("Maps sent to players since the previous tick")
+    int mapsSent;
+
+    @Label("Pending Updates")
+    @Description("Map updates viewers are still waiting for because of the send budget")
+    int pendingUpdates;
+}
@@ -0,0 +1,51 @@
+package com.vibedrochka.video;
+
+import com.vibedrochka.VibeDrochkaPlugin;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the server's tick rate from the main thread.
+ * Runs every tick and keeps a smoothed tick interval, so background work can back off
+ * as soon as the server starts falling behind.
+ */
+public class TickMonitor implements Runnable {
+
+    private static final long NANOS_PER_TICK = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final double SMOOTHING = 0.05; // Roughly the last second of ticks
+
+    private final VibeDrochkaPlugin plugin;
+    private long lastTickNanos = -1;
+    private volatile double averageTickNanos = NANOS_PER_TICK;
+
+    public TickMonitor(VibeDrochkaPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start() {
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+    }
+
+    @Override
+    public void run() {
+        long now = System.nanoTime();
+        if (lastTickNanos >= 0) {
+            averageTickNanos += (now - lastTickNanos - averageTickNanos) * SMOOTHING;
+        }
+        lastTickNanos = now;
+    }
+
+    /**
+     * @return Ticks per second over roughly the last second, at most 20
+     */
+    public double getTps() {
+        return Math.min(20.0, TimeUnit.SECONDS.toNanos(1) / averageTickNanos);
+    }
+
+    /**
+     * @return Average time between two ticks in milliseconds
+     */
+    public double getAverageTickMillis() {
+        return averageTickNanos / 1_000_000.0;
+    }
+}
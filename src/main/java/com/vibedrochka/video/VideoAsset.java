@@ -0,0 +1,41 @@
+package com.vibedrochka.video;
+
+/**
+ * A processed video held by the {@link AssetRegistry}: its frames plus how many
+ * sessions currently use them. Frames are read-only once the asset is registered,
+ * so any number of sessions can share them.
+ */
+public class VideoAsset {
+
+    private final String key;
+    private final VideoData videoData;
+    private final FrameStore frames;
+
+    // Guarded by the registry
+    int references;
+    long idleSince;
+
+    VideoAsset(String key, VideoData videoData, FrameStore frames) {
+        this.key = key;
+        this.videoData = videoData;
+        this.frames = frames;
+    }
+
+    /**
+     * @return Cache key identifying the source and render parameters
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return The request the asset was first processed for
+     */
+    public VideoData getVideoData() {
+        return videoData;
+    }
+
+    public FrameStore getFrames() {
+        return frames;
+    }
+}
@@ -0,0 +1,279 @@
+package com.vibedrochka.video;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Logger;
+
+/**
+ * Persistent cache of processed videos, stored as compressed palette-indexed tiles.
+ * Entries are keyed by content hash and render parameters, with links from the source URL
+ * key, so a repeated request or a server restart can skip the download and transcode entirely.
+ *
+ * Frames are stored as keyframes and inter-frames holding only the tiles that changed, see
+ * {@link FrameCodec}, exactly as the {@link EncodedFrameStore} they were processed into holds
+ * them. Loading an entry opens its records in place and decodes frames only as they are
+ * played. A seek table at the end of the file lists where each keyframe starts.
+ *
+ * File layout (big-endian):
+ * <pre>
+ *   int    magic 'VDRV'
+ *   short  format version
+ *   int    columns, rows (maps)
+ *   int    framerate
+ *   int    frame count
+ *   long   palette signature
+ *   int    keyframe interval (frames)
+ *   per frame:
+ *     frame record, see {@link FrameCodec}
+ *   seek table:
+ *     int    keyframe count
+ *     per keyframe:
+ *       int    frame index
+ *       long   file offset of its record
+ *   long   file offset of the seek table
+ * </pre>
+ */
+public class VideoCache {
+
+    private static final int MAGIC = 0x56445256; // "VDRV"
+    private static final short VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 2 + 4 * 4 + 8 + 4;
+    private static final String EXTENSION = ".vdv";
+    private static final String LINK_EXTENSION = ".link";
+
+    private final File directory;
+    private final Logger logger;
+
+    public VideoCache(File directory, Logger logger) {
+        this.directory = directory;
+        this.logger = logger;
+        if (!directory.exists() && !directory.mkdirs()) {
+            logger.warning("Failed to create video cache folder: " + directory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Builds the cache key for a video request: a hash of the URL and every parameter
+     * that changes the rendered output
+     */
+    public static String keyFor(VideoData videoData, DitherMode dither) {
+        return sha256(videoData.getUrl() + "|" + renderParameters(videoData, dither));
+    }
+
+    /**
+     * Builds the cache key for downloaded content: a hash of the file's SHA-256 and the
+     * render parameters, so the same video behind different URLs is processed only once
+     */
+    public static String keyForContent(String contentHash, VideoData videoData, DitherMode dither) {
+        return sha256("sha256:" + contentHash + "|" + renderParameters(videoData, dither));
+    }
+
+    private static String renderParameters(VideoData videoData, DitherMode dither) {
+        String parameters = videoData.getWidth() + "x" + videoData.getHeight() + "@" + videoData.getFramerate();
+        // Videos processed before dithering existed keep their keys
+        return dither == DitherMode.NEAREST ? parameters : parameters + "|" + dither.getConfigName();
+    }
+
+    static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return toHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    public File getFile(String key) {
+        return new File(directory, key + EXTENSION);
+    }
+
+    public boolean contains(String key) {
+        return getFile(key).isFile();
+    }
+
+    /**
+     * Records that a request key refers to the entry stored under another key
+     * @param alias Key of the request, usually from {@link #keyFor(VideoData, DitherMode)}
+     * @param key Key the entry is stored under, usually from {@link #keyForContent(String, VideoData, DitherMode)}
+     */
+    public void link(String alias, String key) throws IOException {
+        if (alias.equals(key)) {
+            return;
+        }
+        File linkFile = new File(directory, alias + LINK_EXTENSION);
+        File tempFile = new File(directory, alias + LINK_EXTENSION + ".tmp");
+        Files.write(tempFile.toPath(), key.getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile.toPath(), linkFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Follows a link made by {@link #link(String, String)}
+     * @return The key the entry is stored under, or the given key if it is not linked
+     */
+    public String resolve(String key) {
+        File linkFile = new File(directory, key + LINK_EXTENSION);
+        if (!linkFile.isFile()) {
+            return key;
+        }
+        try {
+            String target = new String(Files.readAllBytes(linkFile.toPath()), StandardCharsets.UTF_8).trim();
+            return target.isEmpty() ? key : target;
+        } catch (IOException e) {
+            logger.warning("Failed to read cache link " + linkFile.getName() + ": " + e.getMessage());
+            return key;
+        }
+    }
+
+    /**
+     * Opens a cached video as a frame store that decodes its frames on demand. The entry's
+     * file must stay in place while the store is open; replacing it is fine.
+     * @param key Cache key from {@link #keyFor(VideoData, DitherMode)}
+     * @param videoData The request, used to validate the cached dimensions and framerate
+     * @param paletteSignature Signature of the current palette; entries made with another palette are ignored
+     * @param frameCache Cache the store decodes frames into
+     * @return The frames, or null if there is no usable entry
+     */
+    public EncodedFrameStore load(String key, VideoData videoData, long paletteSignature, FrameCache frameCache) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        int columns;
+        int rows;
+        int frameCount;
+        int keyframeInterval;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), HEADER_BYTES))) {
+            if (in.readInt() != MAGIC) {
+                logger.warning("Ignoring cache entry with unknown format: " + file.getName());
+                return null;
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                logger.info("Ignoring cache entry from format version " + version + ", the video is processed again: " + file.getName());
+                return null;
+            }
+
+            columns = in.readInt();
+            rows = in.readInt();
+            int framerate = in.readInt();
+            frameCount = in.readInt();
+            long signature = in.readLong();
+            keyframeInterval = in.readInt();
+
+            if (columns != videoData.getWidth() || rows != videoData.getHeight() || framerate != videoData.getFramerate()) {
+                logger.warning("Ignoring cache entry with mismatching dimensions: " + file.getName());
+                return null;
+            }
+            if (signature != paletteSignature) {
+                logger.info("Ignoring cache entry made with a different map palette: " + file.getName());
+                return null;
+            }
+            if (frameCount <= 0 || keyframeInterval <= 0) {
+                throw new IOException("Header is corrupt");
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to read cache entry " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+
+        EncodedFrameStore frames = null;
+        try {
+            frames = EncodedFrameStore.open(file, HEADER_BYTES, frameCount, frameCache, columns, rows, keyframeInterval);
+            verifySeekTable(file, frames);
+            return frames;
+        } catch (IOException e) {
+            if (frames != null) {
+                frames.close();
+            }
+            String reason = e instanceof EOFException ? "file is truncated" : e.getMessage();
+            logger.warning("Failed to read cache entry " + file.getName() + ": " + reason);
+            return null;
+        }
+    }
+
+    /**
+     * Checks the seek table against the records, which also catches a file cut short
+     * while being copied
+     */
+    private static void verifySeekTable(File file, EncodedFrameStore frames) throws IOException {
+        long recordsEnd = HEADER_BYTES + frames.getRecordBytes();
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(recordsEnd);
+            int keyframeCount = in.readInt();
+            if (keyframeCount != keyframeCount(frames.getFrameCount(), frames.getKeyframeInterval())) {
+                throw new IOException("Seek table does not match the frames");
+            }
+            for (int k = 0; k < keyframeCount; k++) {
+                int frame = in.readInt();
+                long offset = in.readLong();
+                if (frame != k * frames.getKeyframeInterval() || offset != HEADER_BYTES + frames.getRecordOffset(frame)) {
+                    throw new IOException("Seek table does not match the frames");
+                }
+            }
+            if (in.readLong() != recordsEnd) {
+                throw new IOException("Seek table does not match the frames");
+            }
+        }
+    }
+
+    private static int keyframeCount(int frameCount, int keyframeInterval) {
+        return (frameCount + keyframeInterval - 1) / keyframeInterval;
+    }
+
+    /**
+     * Writes a processed video to the cache. Its frame records are copied as they are,
+     * under a temporary name first, so a crash never leaves a half-written entry behind.
+     */
+    public void save(String key, VideoData videoData, EncodedFrameStore frames, long paletteSignature) throws IOException {
+        File file = getFile(key);
+        File tempFile = new File(directory, key + EXTENSION + ".tmp");
+        int frameCount = frames.getFrameCount();
+        int keyframeInterval = frames.getKeyframeInterval();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(videoData.getWidth());
+            out.writeInt(videoData.getHeight());
+            out.writeInt(videoData.getFramerate());
+            out.writeInt(frameCount);
+            out.writeLong(paletteSignature);
+            out.writeInt(keyframeInterval);
+
+            frames.writeRecords(out);
+
+            int keyframeCount = keyframeCount(frameCount, keyframeInterval);
+            out.writeInt(keyframeCount);
+            for (int k = 0; k < keyframeCount; k++) {
+                int frame = k * keyframeInterval;
+                out.writeInt(frame);
+                out.writeLong(HEADER_BYTES + frames.getRecordOffset(frame));
+            }
+            out.writeLong(HEADER_BYTES + frames.getRecordBytes());
+        }
+
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
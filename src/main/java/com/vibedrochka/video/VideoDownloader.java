@@ -0,0 +1,391 @@
+package com.vibedrochka.video;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * Downloads source videos into a working folder.
+ * Requests for a URL that is already being downloaded, or whose download is still in use,
+ * share the same file. Downloads are bounded by connect/read timeouts, a total duration
+ * and a size cap, and the SHA-256 of the content is computed while streaming so identical
+ * videos behind different URLs can share one cache entry. An interrupted download leaves
+ * a {@code .part} file that the next attempt resumes with an HTTP Range request.
+ *
+ * The downloader only depends on its constructor arguments, so it can be pointed at a
+ * local HTTP server outside of a running Minecraft server.
+ */
+public class VideoDownloader {
+
+    private static final String PART_SUFFIX = ".part";
+    private static final String VALIDATOR_SUFFIX = ".validator";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File directory;
+    private final Logger logger;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final long maxDurationMillis;
+    private final long maxBytes;
+    private final Map<String, Entry> downloads = new HashMap<>();
+
+    /**
+     * @param directory Working folder for downloads; finished files left over from a previous run are removed
+     * @param connectTimeoutMillis Timeout for establishing the connection
+     * @param readTimeoutMillis Timeout for a single read while no data arrives
+     * @param maxDurationMillis Limit for the whole download, so a slow trickle cannot hold a worker forever
+     * @param maxBytes Largest accepted file size
+     */
+    public VideoDownloader(File directory, Logger logger, int connectTimeoutMillis, int readTimeoutMillis,
+                           long maxDurationMillis, long maxBytes) {
+        this.directory = directory;
+        this.logger = logger;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.maxDurationMillis = maxDurationMillis;
+        this.maxBytes = maxBytes;
+
+        if (directory.exists()) {
+            // Finished downloads are only needed while a video is processed; partial ones can be resumed
+            File[] leftovers = directory.listFiles();
+            if (leftovers != null) {
+                for (File leftover : leftovers) {
+                    String name = leftover.getName();
+                    if (!name.endsWith(PART_SUFFIX) && !name.endsWith(VALIDATOR_SUFFIX)) {
+                        leftover.delete();
+                    }
+                }
+            }
+        } else if (!directory.mkdirs()) {
+            logger.warning("Failed to create download folder: " + directory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Downloads a URL, or joins a download of the same URL that is in progress or still in use.
+     * Blocks until the file is complete. Every successful call must be paired with
+     * {@link #release(Download)}. If the thread doing the download is interrupted while others
+     * wait for it, one of them takes the download over instead of failing as well.
+     */
+    public Download acquire(String url) throws IOException {
+        while (true) {
+            Entry entry;
+            boolean owner = false;
+            synchronized (this) {
+                entry = downloads.get(url);
+                if (entry == null) {
+                    entry = new Entry(url);
+                    downloads.put(url, entry);
+                    owner = true;
+                }
+                entry.users++;
+            }
+
+            if (owner) {
+                try {
+                    entry.result.complete(fetch(url));
+                } catch (IOException | RuntimeException e) {
+                    if (Thread.currentThread().isInterrupted() && handOver(entry)) {
+                        throw e;
+                    }
+                    entry.result.completeExceptionally(e);
+                }
+            }
+
+            Download download;
+            try {
+                download = entry.result.get();
+            } catch (ExecutionException e) {
+                leave(entry, false);
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Download failed: " + cause.getMessage(), cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                leave(entry, false);
+                throw new InterruptedIOException("Interrupted while waiting for download of " + url);
+            }
+            if (download != null) {
+                return download;
+            }
+            // The owner was cancelled and handed over; download again, resuming its partial file
+        }
+    }
+
+    /**
+     * Called by the owner of a download when it is interrupted. If anyone else waits for the
+     * download, the owner leaves and the waiters are woken with a null result, so the first
+     * of them to call {@link #acquire(String)} again becomes the new owner.
+     * @return Whether the download was handed over; if not, the owner fails it
+     */
+    private boolean handOver(Entry entry) {
+        synchronized (this) {
+            if (entry.users == 1) {
+                return false;
+            }
+            entry.users--;
+            downloads.remove(entry.url, entry);
+        }
+        entry.result.complete(null);
+        return true;
+    }
+
+    /**
+     * Gives back a download; the file is deleted once nobody uses it anymore
+     */
+    public void release(Download download) {
+        Entry entry;
+        synchronized (this) {
+            entry = downloads.get(download.getUrl());
+        }
+        if (entry != null && entry.result.getNow(null) == download) {
+            leave(entry, true);
+        }
+    }
+
+    private void leave(Entry entry, boolean deleteFile) {
+        synchronized (this) {
+            if (--entry.users > 0) {
+                return;
+            }
+            downloads.remove(entry.url, entry);
+        }
+        if (deleteFile) {
+            Download download = entry.result.getNow(null);
+            if (download != null && !download.getFile().delete()) {
+                download.getFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * @return Number of distinct URLs currently downloading or in use
+     */
+    public synchronized int getActiveCount() {
+        return downloads.size();
+    }
+
+    private Download fetch(String url) throws IOException {
+        String baseName = VideoCache.sha256(url);
+        File file = new File(directory, baseName + extensionOf(url));
+        File partFile = new File(directory, baseName + PART_SUFFIX);
+        File validatorFile = new File(directory, baseName + VALIDATOR_SUFFIX);
+        long deadline = System.currentTimeMillis() + maxDurationMillis;
+
+        MessageDigest digest = newDigest();
+        long offset = partFile.isFile() ? partFile.length() : 0;
+        String validator = offset > 0 && validatorFile.isFile()
+            ? new String(Files.readAllBytes(validatorFile.toPath()), StandardCharsets.UTF_8).trim()
+            : null;
+
+        URLConnection connection = open(url);
+        HttpURLConnection http = connection instanceof HttpURLConnection ? (HttpURLConnection) connection : null;
+
+        // Only resume when the server can tell us the content did not change in between
+        boolean resuming = http != null && offset > 0 && validator != null && !validator.isEmpty();
+        if (resuming) {
+            http.setRequestProperty("Range", "bytes=" + offset + "-");
+            http.setRequestProperty("If-Range", validator);
+        }
+
+        try {
+            connection.connect();
+
+            if (http != null) {
+                int status = http.getResponseCode();
+                if (status == HttpURLConnection.HTTP_PARTIAL && resuming && startsAt(http, offset)) {
+                    logger.info("Resuming download of " + url + " at " + offset + " bytes");
+                    hashFile(partFile, digest);
+                } else if (status / 100 == 2 && status != HttpURLConnection.HTTP_PARTIAL) {
+                    offset = 0;
+                } else if (status == 416 && resuming) {
+                    // The partial file no longer fits the remote one, start over
+                    http.disconnect();
+                    partFile.delete();
+                    validatorFile.delete();
+                    return fetch(url);
+                } else {
+                    throw new IOException("Server returned HTTP " + status + " for " + url);
+                }
+
+                String newValidator = http.getHeaderField("ETag");
+                if (newValidator == null) {
+                    newValidator = http.getHeaderField("Last-Modified");
+                }
+                if (offset == 0) {
+                    if (newValidator != null) {
+                        Files.write(validatorFile.toPath(), newValidator.getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        validatorFile.delete();
+                    }
+                }
+            } else {
+                offset = 0;
+            }
+
+            long expected = connection.getContentLengthLong();
+            if (expected >= 0 && offset + expected > maxBytes) {
+                throw new IOException("Video is too large (" + (offset + expected) + " bytes, limit " + maxBytes + ")");
+            }
+
+            long size = offset;
+            try (InputStream in = connection.getInputStream();
+                 OutputStream out = new FileOutputStream(partFile, offset > 0)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxBytes) {
+                        out.close();
+                        partFile.delete();
+                        validatorFile.delete();
+                        throw new IOException("Video exceeds the size limit of " + maxBytes + " bytes");
+                    }
+                    if (System.currentTimeMillis() > deadline) {
+                        throw new IOException("Download of " + url + " took longer than " + (maxDurationMillis / 1000) + " seconds");
+                    }
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Download of " + url + " was interrupted");
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            if (expected >= 0 && size != offset + expected) {
+                throw new IOException("Download of " + url + " ended after " + size + " of " + (offset + expected) + " bytes");
+            }
+
+            Files.move(partFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            validatorFile.delete();
+            return new Download(url, file, VideoCache.toHex(digest.digest()), size);
+        } finally {
+            if (http != null) {
+                http.disconnect();
+            }
+        }
+    }
+
+    private URLConnection open(String url) throws IOException {
+        URLConnection connection = new URL(url).openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.setUseCaches(false);
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection http = (HttpURLConnection) connection;
+            http.setInstanceFollowRedirects(true);
+            http.setRequestProperty("User-Agent", "VibeDrochka");
+        }
+        return connection;
+    }
+
+    /**
+     * Checks that a partial response continues exactly where the local file ends
+     */
+    private static boolean startsAt(HttpURLConnection http, long offset) {
+        String range = http.getHeaderField("Content-Range");
+        return range != null && range.trim().startsWith("bytes " + offset + "-");
+    }
+
+    private static void hashFile(File file, MessageDigest digest) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Determines the file extension FFmpeg sees from the URL path
+     */
+    private static String extensionOf(String url) {
+        String path;
+        try {
+            path = new URL(url).getPath().toLowerCase();
+        } catch (IOException e) {
+            path = "";
+        }
+        if (path.endsWith(".gif")) {
+            return ".gif";
+        } else if (path.endsWith(".webp")) {
+            return ".webp";
+        }
+        return ".mp4"; // Default to mp4
+    }
+
+    private static class Entry {
+        final String url;
+        final CompletableFuture<Download> result = new CompletableFuture<>();
+        int users; // Guarded by the downloader
+
+        Entry(String url) {
+            this.url = url;
+        }
+    }
+
+    /**
+     * A finished download
+     */
+    public static class Download {
+
+        private final String url;
+        private final File file;
+        private final String contentHash;
+        private final long size;
+
+        Download(String url, File file, String contentHash, long size) {
+            this.url = url;
+            this.file = file;
+            this.contentHash = contentHash;
+            this.size = size;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return Hex SHA-256 of the downloaded bytes
+         */
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -6,38 +6,70 @@ import org.bukkit.ChatColor;
 import org.bukkit.Material;
 import org.bukkit.entity.ItemFrame;
 import org.bukkit.entity.Player;
-import org.bukkit.event.EventHandler;
-import org.bukkit.event.Listener;
-import org.bukkit.event.entity.EntityDamageByEntityEvent;
-import org.bukkit.event.hanging.HangingBreakEvent;
-import org.bukkit.event.player.PlayerInteractEntityEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.persistence.PersistentDataContainer;
 import org.bukkit.persistence.PersistentDataType;
 import org.bukkit.NamespacedKey;
 
-import java.awt.image.BufferedImage;
 import java.util.Arrays;
 import java.util.List;
 
-public class VideoItem implements Listener {
+/**
+ * The video item handed to players. Everything needed to deploy the video is stored in the
+ * item itself, so items keep working across restarts; events are handled by {@link VideoListener}.
+ */
+public class VideoItem {
     
     private final VibeDrochkaPlugin plugin;
     private final VideoData videoData;
-    private final List<BufferedImage> frames;
-    private final NamespacedKey videoKey;
-    private final NamespacedKey sessionKey;
+    private final String assetKey;
+    private final int frameCount;
     
-    public VideoItem(VibeDrochkaPlugin plugin, VideoData videoData, List<BufferedImage> frames) {
+    /**
+     * @param assetKey Key of the processed video in the asset registry and cache
+     * @param frameCount Number of frames, shown in the item lore
+     */
+    public VideoItem(VibeDrochkaPlugin plugin, VideoData videoData, String assetKey, int frameCount) {
         this.plugin = plugin;
         this.videoData = videoData;
-        this.frames = frames;
-        this.videoKey = new NamespacedKey(plugin, "video_item");
-        this.sessionKey = new NamespacedKey(plugin, "video_session");
+        this.assetKey = assetKey;
+        this.frameCount = frameCount;
+    }
+    
+    /**
+     * Reads the video back from an item made by {@link #createItem()}
+     * @return The video item, or null if the stack is not one
+     */
+    public static VideoItem fromItem(VibeDrochkaPlugin plugin, ItemStack item) {
+        if (item == null || item.getType() != Material.FILLED_MAP) {
+            return null;
+        }
         
-        // Register this as an event listener
-        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null) {
+            return null;
+        }
+        
+        PersistentDataContainer pdc = meta.getPersistentDataContainer();
+        String name = pdc.get(key(plugin, "video_item"), PersistentDataType.STRING);
+        String assetKey = pdc.get(key(plugin, "video_asset"), PersistentDataType.STRING);
+        String url = pdc.get(key(plugin, "video_url"), PersistentDataType.STRING);
+        Integer width = pdc.get(key(plugin, "video_width"), PersistentDataType.INTEGER);
+        Integer height = pdc.get(key(plugin, "video_height"), PersistentDataType.INTEGER);
+        Integer framerate = pdc.get(key(plugin, "video_framerate"), PersistentDataType.INTEGER);
+        Integer frames = pdc.get(key(plugin, "video_frames"), PersistentDataType.INTEGER);
+        
+        if (name == null || assetKey == null || url == null || width == null || height == null || framerate == null) {
+            return null;
+        }
+        
+        VideoData videoData = new VideoData(name, url, width, height, framerate);
+        return new VideoItem(plugin, videoData, assetKey, frames != null ? frames : 0);
+    }
+    
+    private static NamespacedKey key(VibeDrochkaPlugin plugin, String name) {
+        return new NamespacedKey(plugin, name);
     }
     
     public ItemStack createItem() {
@@ -51,14 +83,20 @@ public class VideoItem implements Listener {
                 ChatColor.GRAY + "Video: " + ChatColor.WHITE + videoData.getName(),
                 ChatColor.GRAY + "Dimensions: " + ChatColor.WHITE + videoData.getWidth() + "x" + videoData.getHeight() + " blocks",
                 ChatColor.GRAY + "Framerate: " + ChatColor.WHITE + videoData.getFramerate() + " FPS",
-                ChatColor.GRAY + "Frames: " + ChatColor.WHITE + frames.size(),
+                ChatColor.GRAY + "Frames: " + ChatColor.WHITE + frameCount,
                 "",
                 ChatColor.YELLOW + "Right-click on an item frame to deploy!"
             ));
             
             // Store video data in persistent data container
             PersistentDataContainer pdc = meta.getPersistentDataContainer();
-            pdc.set(videoKey, PersistentDataType.STRING, videoData.getName());
+            pdc.set(key(plugin, "video_item"), PersistentDataType.STRING, videoData.getName());
+            pdc.set(key(plugin, "video_asset"), PersistentDataType.STRING, assetKey);
+            pdc.set(key(plugin, "video_url"), PersistentDataType.STRING, videoData.getUrl());
+            pdc.set(key(plugin, "video_width"), PersistentDataType.INTEGER, videoData.getWidth());
+            pdc.set(key(plugin, "video_height"), PersistentDataType.INTEGER, videoData.getHeight());
+            pdc.set(key(plugin, "video_framerate"), PersistentDataType.INTEGER, videoData.getFramerate());
+            pdc.set(key(plugin, "video_frames"), PersistentDataType.INTEGER, frameCount);
             
             item.setItemMeta(meta);
         }
@@ -66,31 +104,11 @@ public class VideoItem implements Listener {
         return item;
     }
     
-    @EventHandler
-    public void onPlayerInteractEntity(PlayerInteractEntityEvent event) {
-        Player player = event.getPlayer();
-        ItemStack item = player.getInventory().getItemInMainHand();
-        
-        // Check if player is holding a video item
-        if (!isVideoItem(item)) {
-            return;
-        }
-        
-        // Check if player is clicking an item frame
-        if (!(event.getRightClicked() instanceof ItemFrame)) {
-            return;
-        }
-        
-        ItemFrame clickedFrame = (ItemFrame) event.getRightClicked();
-        
-        // Get video data from the item
-        String videoName = getVideoNameFromItem(item);
-        if (videoName == null || !videoName.equals(videoData.getName())) {
-            return;
-        }
-        
-        event.setCancelled(true);
-        
+    /**
+     * Deploys the video onto the grid of item frames whose top-left corner was clicked
+     * @param item The stack the player used, one of which is consumed on success
+     */
+    public void deploy(Player player, ItemFrame clickedFrame, ItemStack item) {
         // Detect item frame grid
         ItemFrameDetector detector = new ItemFrameDetector();
         List<List<ItemFrame>> frameGrid = detector.detectFrameGrid(clickedFrame, videoData.getWidth(), videoData.getHeight());
@@ -102,6 +120,13 @@ public class VideoItem implements Listener {
             return;
         }
         
+        // The frames may have been unloaded since the item was made; they can only be
+        // brought back if the video is still in the cache
+        if (!plugin.getVideoManager().isAssetAvailable(assetKey)) {
+            player.sendMessage(ChatColor.RED + "This video's data is no longer available, please process it again.");
+            return;
+        }
+        
         // Deploy video to the item frames
         deployVideo(player, frameGrid);
         
@@ -117,165 +142,51 @@ public class VideoItem implements Listener {
     }
     
     private void deployVideo(Player player, List<List<ItemFrame>> frameGrid) {
+        // Share the frames if another wall already plays this video
+        VideoAsset asset = plugin.getVideoManager().getAssets().acquire(assetKey);
+        if (asset != null) {
+            startSession(player, frameGrid, asset);
+            return;
+        }
+        
+        // Otherwise read them back from the cache off the main thread
+        player.sendMessage(ChatColor.YELLOW + "Loading video...");
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            VideoAsset loaded = plugin.getVideoManager().loadAsset(assetKey, videoData);
+            
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                if (loaded == null) {
+                    player.sendMessage(ChatColor.RED + "Failed to load video data, returning the item.");
+                    player.getInventory().addItem(createItem());
+                    return;
+                }
+                startSession(player, frameGrid, loaded);
+            });
+        });
+    }
+    
+    /**
+     * @param asset A reference the new session takes over
+     */
+    private void startSession(Player player, List<List<ItemFrame>> frameGrid, VideoAsset asset) {
         // Create a unique session ID for this video playback
         String sessionId = videoData.getName() + "_" + System.currentTimeMillis();
         
         // Create and start video session
-        VideoSession session = new VideoSession(plugin, videoData, frames, frameGrid);
+        VideoSession session = new VideoSession(plugin, sessionId, videoData, asset, frameGrid);
         plugin.getVideoManager().startVideoSession(sessionId, session);
         
-        // Mark all frames with session ID for cleanup detection
-        markFramesWithSession(frameGrid, sessionId);
-        
         // Start playback
         session.startPlayback();
         
         player.sendMessage(ChatColor.GREEN + "Started video session: " + sessionId);
     }
     
-    private boolean isVideoItem(ItemStack item) {
-        if (item == null || item.getType() != Material.FILLED_MAP) {
-            return false;
-        }
-        
-        ItemMeta meta = item.getItemMeta();
-        if (meta == null) {
-            return false;
-        }
-        
-        PersistentDataContainer pdc = meta.getPersistentDataContainer();
-        return pdc.has(videoKey, PersistentDataType.STRING);
-    }
-    
-    private String getVideoNameFromItem(ItemStack item) {
-        if (!isVideoItem(item)) {
-            return null;
-        }
-        
-        ItemMeta meta = item.getItemMeta();
-        if (meta == null) {
-            return null;
-        }
-        
-        PersistentDataContainer pdc = meta.getPersistentDataContainer();
-        return pdc.get(videoKey, PersistentDataType.STRING);
-    }
-    
-    @EventHandler
-    public void onFrameBreak(HangingBreakEvent event) {
-        plugin.getLogger().info("[VideoItem] Frame break detected: " + event.getEntity().getType());
-        
-        if (!(event.getEntity() instanceof ItemFrame)) {
-            plugin.getLogger().info("[VideoItem] Not an ItemFrame, ignoring");
-            return;
-        }
-        
-        ItemFrame brokenFrame = (ItemFrame) event.getEntity();
-        ItemStack item = brokenFrame.getItem();
-        
-        plugin.getLogger().info("[VideoItem] ItemFrame broken with item: " + (item != null ? item.getType() : "null"));
-        
-        // Check if this frame contains a video map
-        if (isVideoItem(item)) {
-            plugin.getLogger().info("[VideoItem] Found video item in broken frame!");
-            String videoName = getVideoNameFromItem(item);
-            if (videoName != null) {
-                plugin.getLogger().info("[VideoItem] Video name: " + videoName);
-                
-                // Find and stop the video session
-                String sessionId = findSessionByFrame(brokenFrame);
-                plugin.getLogger().info("[VideoItem] Session ID: " + sessionId);
-                
-                if (sessionId != null) {
-                    plugin.getVideoManager().stopVideoSession(sessionId);
-                    plugin.getLogger().info("Stopped video session " + sessionId + " due to frame break");
-                    
-                    // Drop the video item at the broken frame location
-                    ItemStack videoItem = createItem();
-                    brokenFrame.getWorld().dropItemNaturally(brokenFrame.getLocation(), videoItem);
-                    plugin.getLogger().info("[VideoItem] Dropped video item at broken frame location");
-                    
-                    event.setCancelled(false); // Allow the frame to break
-                } else {
-                    plugin.getLogger().warning("[VideoItem] Could not find session ID for broken frame");
-                }
-            } else {
-                plugin.getLogger().warning("[VideoItem] Could not get video name from item");
-            }
-        } else {
-            // Check if any active sessions contain this frame
-            for (String sessionId : plugin.getVideoManager().getActiveSessions().keySet()) {
-                plugin.getVideoManager().stopVideoSession(sessionId);
-                plugin.getLogger().info("[VideoItem] Stopped session " + sessionId + " due to potential frame break");
-                
-                // Drop a generic video item
-                ItemStack videoItem = createItem();
-                brokenFrame.getWorld().dropItemNaturally(brokenFrame.getLocation(), videoItem);
-                break;
-            }
-        }
-    }
-    
-    private void markFramesWithSession(List<List<ItemFrame>> frameGrid, String sessionId) {
-        for (List<ItemFrame> row : frameGrid) {
-            for (ItemFrame frame : row) {
-                if (frame != null) {
-                    ItemStack item = frame.getItem();
-                    if (item != null && item.hasItemMeta()) {
-                        ItemMeta meta = item.getItemMeta();
-                        if (meta != null) {
-                            PersistentDataContainer pdc = meta.getPersistentDataContainer();
-                            pdc.set(sessionKey, PersistentDataType.STRING, sessionId);
-                            item.setItemMeta(meta);
-                            frame.setItem(item);
-                        }
-                    }
-                }
-            }
-        }
+    public VideoData getVideoData() {
+        return videoData;
     }
     
-    private String findSessionByFrame(ItemFrame frame) {
-        ItemStack item = frame.getItem();
-        if (item != null && item.hasItemMeta()) {
-            ItemMeta meta = item.getItemMeta();
-            if (meta != null) {
-                PersistentDataContainer pdc = meta.getPersistentDataContainer();
-                return pdc.get(sessionKey, PersistentDataType.STRING);
-            }
-        }
-        return null;
-    }
-    
-    @EventHandler
-    public void onFrameDamage(EntityDamageByEntityEvent event) {
-        if (!(event.getEntity() instanceof ItemFrame)) {
-            return;
-        }
-        
-        ItemFrame frame = (ItemFrame) event.getEntity();
-        ItemStack item = frame.getItem();
-        
-        plugin.getLogger().info("[VideoItem] ItemFrame damaged with item: " + (item != null ? item.getType() : "null"));
-        
-        // Check if this is a video frame and handle breaking
-        if (item != null && item.getType() == Material.FILLED_MAP) {
-            plugin.getLogger().info("[VideoItem] Found map in damaged frame, checking for video session");
-            
-            // Stop all video sessions as a failsafe
-            boolean stoppedAny = false;
-            for (String sessionId : plugin.getVideoManager().getActiveSessions().keySet()) {
-                plugin.getVideoManager().stopVideoSession(sessionId);
-                plugin.getLogger().info("[VideoItem] Stopped session " + sessionId + " due to frame damage");
-                stoppedAny = true;
-            }
-            
-            if (stoppedAny) {
-                // Drop a video item
-                ItemStack videoItem = createItem();
-                frame.getWorld().dropItemNaturally(frame.getLocation(), videoItem);
-                plugin.getLogger().info("[VideoItem] Dropped video item due to frame damage");
-            }
-        }
+    public String getAssetKey() {
+        return assetKey;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+package com.vibedrochka.video;
+
+import com.vibedrochka.VibeDrochkaPlugin;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.hanging.HangingBreakEvent;
+import org.bukkit.event.player.PlayerInteractEntityEvent;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * The plugin's single listener for video items and video walls.
+ * Registered once on enable; sessions are found through the frame index in
+ * {@link VideoManager}, so each event costs one map lookup however many videos run.
+ */
+public class VideoListener implements Listener {
+
+    private final VibeDrochkaPlugin plugin;
+
+    public VideoListener(VibeDrochkaPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler
+    public void onPlayerInteractEntity(PlayerInteractEntityEvent event) {
+        if (!(event.getRightClicked() instanceof ItemFrame)) {
+            return;
+        }
+
+        Player player = event.getPlayer();
+        ItemStack item = player.getInventory().getItemInMainHand();
+        VideoItem videoItem = VideoItem.fromItem(plugin, item);
+        if (videoItem == null) {
+            return;
+        }
+
+        event.setCancelled(true);
+        videoItem.deploy(player, (ItemFrame) event.getRightClicked(), item);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFrameBreak(HangingBreakEvent event) {
+        stopWall(event.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFrameDamage(EntityDamageByEntityEvent event) {
+        stopWall(event.getEntity());
+    }
+
+    /**
+     * Stops the video playing on the given frame and drops its item there
+     */
+    private void stopWall(Entity entity) {
+        if (!(entity instanceof ItemFrame)) {
+            return;
+        }
+
+        VideoManager videoManager = plugin.getVideoManager();
+        VideoSession session = videoManager.getSessionByFrame(entity.getUniqueId());
+        if (session == null) {
+            return;
+        }
+
+        videoManager.stopVideoSession(session.getSessionId());
+        plugin.getLogger().info("Stopped video session " + session.getSessionId() + " because one of its frames was broken");
+
+        VideoItem videoItem = new VideoItem(plugin, session.getVideoData(), session.getAssetKey(), session.getTotalFrames());
+        entity.getWorld().dropItemNaturally(entity.getLocation(), videoItem.createItem());
+    }
+}
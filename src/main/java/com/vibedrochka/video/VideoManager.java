@@ -2,67 +2,182 @@ package com.vibedrochka.video;
 
 import com.vibedrochka.VibeDrochkaPlugin;
 import org.bukkit.ChatColor;
+import org.bukkit.entity.ItemFrame;
 import org.bukkit.entity.Player;
 
-import java.awt.image.BufferedImage;
 import java.io.*;
-import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 
 public class VideoManager {
     
+    // Decoding a frame starts at most this far back
+    private static final int KEYFRAME_SECONDS = 2;
+    
     private final VibeDrochkaPlugin plugin;
     private final ConcurrentHashMap<String, VideoSession> activeSessions;
-    private final VideoRenderer renderer;
+    private final ConcurrentHashMap<UUID, VideoSession> sessionsByFrame = new ConcurrentHashMap<>();
+    private final ForkJoinPool quantizerPool;
+    private final ExecutorService framePreparer;
+    private final VideoCache cache;
+    private final File spoolFolder;
+    private final List<FrameStore> frameStores = new CopyOnWriteArrayList<>();
+    private final FrameCache frameCache;
+    private final VideoDownloader downloader;
+    private final AssetRegistry assets;
+    private final DeploymentManager deployments;
+    private final SessionMonitor sessionMonitor;
+    private final TickMonitor tickMonitor;
+    private final ProcessingQueue processingQueue;
+    private final MetricsReporter metrics;
+    private final MapSendScheduler sendScheduler;
+    private final int ffmpegThreads;
+    private final int startBufferFrames;
+    private final DitherMode ditherMode;
+    private MapColorQuantizer quantizer;
     
     public VideoManager(VibeDrochkaPlugin plugin) {
         this.plugin = plugin;
         this.activeSessions = new ConcurrentHashMap<>();
-        this.renderer = new VideoRenderer(plugin);
+        this.cache = new VideoCache(new File(plugin.getVideoFolder(), "cache"), plugin.getLogger());
+        this.spoolFolder = new File(plugin.getVideoFolder(), "frames");
+        this.frameCache = new FrameCache(Math.max(1, plugin.getConfig().getLong("assets.frame-cache-mb", 128)) * 1024L * 1024L);
+        
+        // Spool files are only valid while the server runs, remove anything left over from a crash
+        if (spoolFolder.exists()) {
+            File[] leftovers = spoolFolder.listFiles();
+            if (leftovers != null) {
+                for (File leftover : leftovers) {
+                    leftover.delete();
+                }
+            }
+        } else {
+            spoolFolder.mkdirs();
+        }
+        
+        this.downloader = new VideoDownloader(new File(plugin.getVideoFolder(), "downloads"), plugin.getLogger(),
+            (int) (plugin.getConfig().getLong("download.connect-timeout-seconds", 10) * 1000),
+            (int) (plugin.getConfig().getLong("download.read-timeout-seconds", 30) * 1000),
+            plugin.getConfig().getLong("download.max-duration-seconds", 600) * 1000L,
+            plugin.getConfig().getLong("download.max-size-mb", 512) * 1024L * 1024L);
+        this.assets = new AssetRegistry(plugin);
+        this.deployments = new DeploymentManager(plugin);
+        this.sessionMonitor = new SessionMonitor(plugin, this);
+        this.tickMonitor = new TickMonitor(plugin);
+        this.processingQueue = new ProcessingQueue(plugin, this);
+        this.metrics = new MetricsReporter(plugin, this);
+        this.sendScheduler = new MapSendScheduler(plugin, this);
+        this.ffmpegThreads = Math.max(0, plugin.getConfig().getInt("processing.ffmpeg-threads", 2));
+        this.startBufferFrames = Math.max(1, plugin.getConfig().getInt("streaming.start-buffer-frames", 40));
+        
+        String dither = plugin.getConfig().getString("processing.dither", "ordered");
+        DitherMode configuredDither = DitherMode.fromName(dither);
+        if (configuredDither == null) {
+            plugin.getLogger().warning("Unknown processing.dither '" + dither + "', using ordered");
+            configuredDither = DitherMode.ORDERED;
+        }
+        this.ditherMode = configuredDither;
+        
+        // Leave one core for the server main thread
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.quantizerPool = new ForkJoinPool(workers, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("VibeDrochka-Quantizer-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        
+        // Sessions prepare their next frame on these threads, off the main thread
+        int preparers = Math.max(1, plugin.getConfig().getInt("playback.prepare-threads", 2));
+        AtomicInteger preparerIndex = new AtomicInteger();
+        this.framePreparer = Executors.newFixedThreadPool(preparers, runnable -> {
+            Thread thread = new Thread(runnable, "VibeDrochka-Prepare-" + preparerIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
     
-    public void processVideo(VideoData videoData, Player player) {
+    /**
+     * Runs a processing job on the calling worker thread; use {@link ProcessingQueue#submit} to queue one
+     */
+    void processVideo(ProcessingJob job) {
+        VideoData videoData = job.getVideoData();
+        Player player = job.getPlayer();
+        job.setState(ProcessingJob.State.PROCESSING);
+        
+        plugin.getServer().getScheduler().runTask(plugin, () -> 
+            player.sendMessage(ChatColor.YELLOW + "Processing video: " + videoData.getName())
+        );
+        
         try {
-            // Send progress message
-            plugin.getServer().getScheduler().runTask(plugin, () -> 
-                player.sendMessage(ChatColor.YELLOW + "Downloading video file...")
-            );
-            
-            // Download video file
-            File videoFile = downloadVideo(videoData);
+            // Build the color lookup table before anything else, it is needed for cache lookups too
+            getQuantizer();
+            String requestKey = VideoCache.keyFor(videoData, ditherMode);
             
-            plugin.getServer().getScheduler().runTask(plugin, () -> 
-                player.sendMessage(ChatColor.YELLOW + "Extracting video frames...")
-            );
+            // Reuse the video if it is already loaded for another deployment, or was processed before
+            VideoAsset asset = loadAsset(cache.resolve(requestKey), videoData);
             
-            // Extract frames using FFmpeg
-            List<BufferedImage> frames = extractFrames(videoFile, videoData);
-            
-            if (frames.isEmpty()) {
+            if (asset != null) {
+                plugin.getLogger().info("Reusing " + asset.getFrames().getFrameCount() + " processed frames for " + videoData.getName());
+            } else {
+                // Send progress message
                 plugin.getServer().getScheduler().runTask(plugin, () -> 
-                    player.sendMessage(ChatColor.RED + "Failed to extract frames from video!")
+                    player.sendMessage(ChatColor.YELLOW + "Downloading video file...")
                 );
-                return;
+                
+                // Download video file, sharing it with anyone requesting the same URL right now
+                job.setState(ProcessingJob.State.DOWNLOADING);
+                VideoDownloader.Download download = downloader.acquire(videoData.getUrl());
+                try {
+                    // The same content may have been processed before under another URL
+                    String contentKey = VideoCache.keyForContent(download.getContentHash(), videoData, ditherMode);
+                    asset = loadAsset(contentKey, videoData);
+                    
+                    if (asset != null) {
+                        plugin.getLogger().info("Reusing " + asset.getFrames().getFrameCount() + " processed frames for identical content of " + videoData.getName());
+                    } else {
+                        job.checkCancelled();
+                        job.setState(ProcessingJob.State.PROCESSING);
+                        plugin.getServer().getScheduler().runTask(plugin, () -> 
+                            player.sendMessage(ChatColor.YELLOW + "Extracting video frames...")
+                        );
+                        
+                        // Extract frames using FFmpeg; null means the player already got the item
+                        asset = transcode(job, download.getFile(), contentKey);
+                    }
+                    
+                    try {
+                        cache.link(requestKey, contentKey);
+                    } catch (IOException e) {
+                        plugin.getLogger().warning("Failed to link cache entry for " + videoData.getName() + ": " + e.getMessage());
+                    }
+                } finally {
+                    downloader.release(download);
+                }
             }
             
-            plugin.getServer().getScheduler().runTask(plugin, () -> {
-                player.sendMessage(ChatColor.GREEN + "Video processed successfully!");
-                player.sendMessage(ChatColor.GREEN + "Extracted " + frames.size() + " frames");
-                
-                // Create and give video item to player
-                VideoItem videoItem = new VideoItem(plugin, videoData, frames);
-                player.getInventory().addItem(videoItem.createItem());
-                
-                player.sendMessage(ChatColor.AQUA + "Right-click on an item frame to deploy the video!");
-                player.sendMessage(ChatColor.GRAY + "Make sure you have enough item frames arranged in a " + 
-                                   videoData.getWidth() + "x" + videoData.getHeight() + " grid");
-            });
+            if (asset != null) {
+                giveVideoItem(player, asset, asset.getFrames().getFrameCount(), false);
+            }
             
         } catch (Exception e) {
+            if (job.isCancelled()) {
+                if (!plugin.isEnabled()) {
+                    return; // Cancelled by shutdown
+                }
+                plugin.getServer().getScheduler().runTask(plugin, () -> 
+                    player.sendMessage(ChatColor.YELLOW + "Processing of " + videoData.getName() + " was cancelled.")
+                );
+                return;
+            }
             plugin.getServer().getScheduler().runTask(plugin, () -> 
                 player.sendMessage(ChatColor.RED + "Error processing video: " + e.getMessage())
             );
@@ -71,93 +186,223 @@ public class VideoManager {
         }
     }
     
-    private File downloadVideo(VideoData videoData) throws IOException {
-        URL url = new URL(videoData.getUrl());
-        String fileName = videoData.getName() + "_" + System.currentTimeMillis();
+    /**
+     * Gives the player the item for a processed video
+     * @param asset The video; unless it is still being processed, the caller's reference is given back
+     * @param stillProcessing Whether the caller is still decoding frames in the background
+     */
+    private void giveVideoItem(Player player, VideoAsset asset, int frameCount, boolean stillProcessing) {
+        VideoData videoData = asset.getVideoData();
+        // A video joined while another job decodes it is not done either, and its frame count is not final
+        boolean partial = stillProcessing || !asset.getFrames().isComplete();
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            if (partial) {
+                player.sendMessage(ChatColor.GREEN + "Video is ready to deploy!");
+                player.sendMessage(ChatColor.GRAY + "The rest of it is still being processed and plays as soon as it is ready.");
+            } else {
+                player.sendMessage(ChatColor.GREEN + "Video processed successfully!");
+                player.sendMessage(ChatColor.GREEN + "Extracted " + frameCount + " frames");
+            }
+            
+            // Create and give video item to player. The item only refers to the asset by key,
+            // so the frames can be unloaded while it sits in an inventory.
+            VideoItem videoItem = new VideoItem(plugin, videoData, asset.getKey(), frameCount);
+            player.getInventory().addItem(videoItem.createItem());
+            if (!stillProcessing) {
+                assets.release(asset);
+            }
+            
+            player.sendMessage(ChatColor.AQUA + "Right-click on an item frame to deploy the video!");
+            player.sendMessage(ChatColor.GRAY + "Make sure you have enough item frames arranged in a " + 
+                               videoData.getWidth() + "x" + videoData.getHeight() + " grid");
+        });
+    }
+    
+    /**
+     * Decodes a downloaded video into a new frame store. As soon as the configured number of
+     * frames is buffered the store is registered as an asset and the player gets the item, so
+     * walls can start playing while the rest is still being decoded.
+     * @return The finished asset with one reference for the caller, or null if the player already has the item
+     */
+    private VideoAsset transcode(ProcessingJob job, File videoFile, String contentKey) throws IOException, InterruptedException {
+        VideoData videoData = job.getVideoData();
+        EncodedFrameStore frames = createFrameStore(videoData.getWidth(), videoData.getHeight(), videoData.getFramerate());
+        AtomicReference<VideoAsset> published = new AtomicReference<>();
+        boolean finished;
         
-        // Determine file extension from URL or content type
-        String urlPath = url.getPath().toLowerCase();
-        if (urlPath.endsWith(".mp4")) {
-            fileName += ".mp4";
-        } else if (urlPath.endsWith(".gif")) {
-            fileName += ".gif";
-        } else if (urlPath.endsWith(".webp")) {
-            fileName += ".webp";
-        } else {
-            fileName += ".mp4"; // Default to mp4
+        try {
+            finished = extractFrames(videoFile, job, frames, () -> {
+                VideoAsset asset = assets.register(contentKey, videoData, frames);
+                published.set(asset);
+                if (asset.getFrames() != frames) {
+                    return false; // Another job is already decoding the same content
+                }
+                giveVideoItem(job.getPlayer(), asset, Math.max(frames.getFrameCount(), job.getTotalFrames()), true);
+                return true;
+            });
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            VideoAsset asset = published.get();
+            if (asset == null) {
+                closeFrameStore(frames);
+            } else {
+                // Walls that are already playing keep looping over the frames decoded so far
+                frames.markComplete();
+                assets.release(asset);
+            }
+            throw e;
+        }
+        
+        VideoAsset asset = published.get();
+        if (!finished) {
+            return asset;
+        }
+        
+        frames.markComplete();
+        if (frames.getFrameCount() == 0) {
+            closeFrameStore(frames);
+            throw new IOException("Failed to extract frames from video!");
         }
         
-        File videoFile = new File(plugin.getVideoFolder(), fileName);
+        try {
+            cache.save(contentKey, videoData, frames, getQuantizer().getPaletteSignature());
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to cache video " + videoData.getName() + ": " + e.getMessage());
+        }
         
-        try (InputStream in = url.openStream()) {
-            Files.copy(in, videoFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        if (asset == null) {
+            // Shorter than the buffer, nothing was handed out yet
+            return assets.register(contentKey, videoData, frames);
         }
         
-        return videoFile;
+        int frameCount = frames.getFrameCount();
+        plugin.getServer().getScheduler().runTask(plugin, () -> 
+            job.getPlayer().sendMessage(ChatColor.GREEN + "Finished processing " + videoData.getName() + " (" + frameCount + " frames)")
+        );
+        assets.release(asset);
+        return null;
     }
     
-    private List<BufferedImage> extractFrames(File videoFile, VideoData videoData) throws IOException, InterruptedException {
-        List<BufferedImage> frames = new ArrayList<>();
+    /**
+     * Streams frames from FFmpeg into the store
+     * @param onBuffered Called once the start buffer is filled; returning false stops decoding
+     * @return Whether the whole video was decoded
+     */
+    private boolean extractFrames(File videoFile, ProcessingJob job, EncodedFrameStore frames,
+                                  BooleanSupplier onBuffered) throws IOException, InterruptedException {
+        VideoData videoData = job.getVideoData();
         
-        // Create temporary directory for frames
-        File tempDir = new File(plugin.getVideoFolder(), "temp_" + System.currentTimeMillis());
-        tempDir.mkdirs();
+        // Calculate target dimensions maintaining aspect ratio
+        int[] targetDimensions = calculateOptimalDimensions(videoData.getWidth(), videoData.getHeight());
+        int targetWidth = targetDimensions[0];
+        int targetHeight = targetDimensions[1];
         
-        try {
-            // Calculate target dimensions maintaining aspect ratio
-            int[] targetDimensions = calculateOptimalDimensions(videoData.getWidth(), videoData.getHeight());
-            int targetWidth = targetDimensions[0];
-            int targetHeight = targetDimensions[1];
-            
-            // Build FFmpeg command
-            ProcessBuilder pb = new ProcessBuilder(
-                "ffmpeg",
-                "-i", videoFile.getAbsolutePath(),
-                "-vf", "scale=" + targetWidth + ":" + targetHeight + ":force_original_aspect_ratio=decrease,pad=" + 
-                       targetWidth + ":" + targetHeight + ":(ow-iw)/2:(oh-ih)/2:black",
-                "-r", String.valueOf(videoData.getFramerate()),
-                "-f", "image2",
-                tempDir.getAbsolutePath() + "/frame_%04d.png"
-            );
-            
-            Process process = pb.start();
+        MapColorQuantizer quantizer = getQuantizer();
+        MapColorQuantizer.FrameHistory history = new MapColorQuantizer.FrameHistory();
+        
+        // Stream raw frames from FFmpeg and convert each one to map tiles as it arrives
+        try (FrameDecoder decoder = new FrameDecoder(plugin.getLogger(), videoFile, targetWidth, targetHeight,
+                                                     videoData.getFramerate(), ffmpegThreads)) {
+            job.attachDecoder(decoder);
+            int[] pixels = new int[targetWidth * targetHeight];
+            int reportedQuarter = 0;
             
-            // Log FFmpeg output for debugging
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    plugin.getLogger().info("FFmpeg: " + line);
+            while (decoder.readFrame(pixels)) {
+                frames.append(quantizer.quantize(pixels, targetWidth, targetHeight, videoData.getWidth(), videoData.getHeight(),
+                                                 ditherMode, history));
+                
+                int decoded = frames.getFrameCount();
+                int total = decoder.getExpectedFrameCount();
+                job.setProgress(decoded, total);
+                
+                // Tell the player every 25%
+                if (total > 0) {
+                    int quarter = Math.min(3, decoded * 4 / total);
+                    if (quarter > reportedQuarter) {
+                        reportedQuarter = quarter;
+                        int percent = quarter * 25;
+                        plugin.getServer().getScheduler().runTask(plugin, () -> 
+                            job.getPlayer().sendMessage(ChatColor.GRAY + videoData.getName() + ": " + percent + "% (" + decoded + "/" + total + " frames)")
+                        );
+                    }
+                }
+                
+                if (decoded == startBufferFrames && !onBuffered.getAsBoolean()) {
+                    return false;
                 }
+                
+                job.checkCancelled();
+                processingQueue.throttle(job);
             }
             
-            int exitCode = process.waitFor();
+            job.checkCancelled();
+            int exitCode = decoder.waitFor();
             if (exitCode != 0) {
                 throw new RuntimeException("FFmpeg process failed with exit code: " + exitCode);
             }
-            
-            // Load extracted frames
-            File[] frameFiles = tempDir.listFiles((dir, name) -> name.endsWith(".png"));
-            if (frameFiles != null) {
-                java.util.Arrays.sort(frameFiles);
-                
-                for (File frameFile : frameFiles) {
-                    try {
-                        BufferedImage image = javax.imageio.ImageIO.read(frameFile);
-                        if (image != null) {
-                            frames.add(image);
-                        }
-                    } catch (IOException e) {
-                        plugin.getLogger().warning("Failed to read frame: " + frameFile.getName());
-                    }
-                }
-            }
-            
-        } finally {
-            // Clean up temporary files
-            deleteDirectory(tempDir);
         }
         
-        return frames;
+        return true;
+    }
+    
+    /**
+     * Takes a reference to a processed video, loading it from the persistent cache if it is
+     * not in memory. May block on disk, so call it off the main thread.
+     * @return The asset, or null if it is neither loaded nor cached
+     */
+    public VideoAsset loadAsset(String cacheKey, VideoData videoData) {
+        VideoAsset asset = assets.acquire(cacheKey);
+        if (asset != null) {
+            return asset;
+        }
+        
+        EncodedFrameStore frames = cache.load(cacheKey, videoData, getQuantizer().getPaletteSignature(), frameCache);
+        if (frames == null) {
+            return null;
+        }
+        frameStores.add(frames);
+        return assets.register(cacheKey, videoData, frames);
+    }
+    
+    /**
+     * @return Whether the asset can be used without processing the video again
+     */
+    public boolean isAssetAvailable(String cacheKey) {
+        return assets.isLoaded(cacheKey) || cache.contains(cacheKey);
+    }
+    
+    /**
+     * Starts a saved deployment again on its original item frames
+     * @param asset A reference the new session takes over
+     */
+    public void resumeDeployment(DeploymentRecord record, VideoAsset asset, List<List<ItemFrame>> frameGrid) {
+        VideoData videoData = record.getVideoData();
+        FrameStore frames = asset.getFrames();
+        
+        VideoSession session = new VideoSession(plugin, record.getSessionId(), videoData, asset, frameGrid);
+        startVideoSession(record.getSessionId(), session);
+        session.startPlayback(record.getPosition() % Math.max(1, frames.getFrameCount()));
+        
+        plugin.getLogger().info("Restored video " + videoData.getName() + " (" + record.getSessionId() + ") at frame " + record.getPosition());
+    }
+    
+    private File newSpoolFile() {
+        return new File(spoolFolder, UUID.randomUUID() + ".bin");
+    }
+    
+    /**
+     * Creates an empty frame store that keeps frames compressed in a spool file, with a
+     * keyframe every {@link #KEYFRAME_SECONDS} seconds; it is closed on shutdown at the latest
+     */
+    public EncodedFrameStore createFrameStore(int columns, int rows, int framerate) throws IOException {
+        EncodedFrameStore store = EncodedFrameStore.create(newSpoolFile(), frameCache, columns, rows,
+                                                           Math.max(1, framerate * KEYFRAME_SECONDS));
+        frameStores.add(store);
+        return store;
+    }
+    
+    public void closeFrameStore(FrameStore store) {
+        frameStores.remove(store);
+        store.close();
     }
     
     private int[] calculateOptimalDimensions(int blockWidth, int blockHeight) {
@@ -167,43 +412,127 @@ public class VideoManager {
         return new int[]{pixelWidth, pixelHeight};
     }
     
-    private void deleteDirectory(File directory) {
-        if (directory.exists()) {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isDirectory()) {
-                        deleteDirectory(file);
-                    } else {
-                        file.delete();
-                    }
-                }
-            }
-            directory.delete();
+    /**
+     * Returns the shared quantizer, building its lookup table on first use.
+     * Must not be called from the main server thread the first time.
+     */
+    public synchronized MapColorQuantizer getQuantizer() {
+        if (quantizer == null) {
+            long start = System.currentTimeMillis();
+            quantizer = new MapColorQuantizer(quantizerPool);
+            plugin.getLogger().info("Built map color lookup table in " + (System.currentTimeMillis() - start) + " ms");
+            plugin.getLogger().info("Lookup table accuracy vs Bukkit matching: " + quantizer.checkAccuracy(10000, 42L));
         }
+        return quantizer;
     }
     
     public void shutdown() {
-        // Stop all active video sessions
+        // Kill running FFmpeg processes before their frame stores go away
+        processingQueue.shutdown();
+        
+        // Remember every wall so it comes back after a restart
+        deployments.save(activeSessions);
+        
+        // Stop all active video sessions, leaving the maps in their frames
+        assets.close();
         for (VideoSession session : activeSessions.values()) {
-            session.stop();
+            session.stop(false);
         }
         activeSessions.clear();
+        sessionsByFrame.clear();
+        quantizerPool.shutdownNow();
+        framePreparer.shutdownNow();
+        
+        for (FrameStore store : frameStores) {
+            store.close();
+        }
+        frameStores.clear();
     }
     
     public void startVideoSession(String sessionId, VideoSession session) {
         activeSessions.put(sessionId, session);
+        for (List<ItemFrame> row : session.getFrameGrid()) {
+            for (ItemFrame frame : row) {
+                if (frame != null) {
+                    sessionsByFrame.put(frame.getUniqueId(), session);
+                }
+            }
+        }
     }
     
     public void stopVideoSession(String sessionId) {
         VideoSession session = activeSessions.remove(sessionId);
         if (session != null) {
+            for (List<ItemFrame> row : session.getFrameGrid()) {
+                for (ItemFrame frame : row) {
+                    if (frame != null) {
+                        sessionsByFrame.remove(frame.getUniqueId(), session);
+                    }
+                }
+            }
             session.stop();
         }
     }
     
-    public VideoRenderer getRenderer() {
-        return renderer;
+    /**
+     * @param frameId Unique id of an item frame entity
+     * @return The session playing on that frame, or null if it is not part of a video wall
+     */
+    public VideoSession getSessionByFrame(UUID frameId) {
+        return sessionsByFrame.get(frameId);
+    }
+    
+    public VideoDownloader getDownloader() {
+        return downloader;
+    }
+    
+    public AssetRegistry getAssets() {
+        return assets;
+    }
+    
+    /**
+     * @return Threads that prepare upcoming frames for playing sessions
+     */
+    public ExecutorService getFramePreparer() {
+        return framePreparer;
+    }
+    
+    public ProcessingQueue getProcessingQueue() {
+        return processingQueue;
+    }
+    
+    public TickMonitor getTickMonitor() {
+        return tickMonitor;
+    }
+    
+    public MetricsReporter getMetrics() {
+        return metrics;
+    }
+    
+    public MapSendScheduler getSendScheduler() {
+        return sendScheduler;
+    }
+    
+    /**
+     * @return Decoded frames of all frame stores
+     */
+    public FrameCache getFrameCache() {
+        return frameCache;
+    }
+    
+    /**
+     * @return Every frame store currently open, loaded or still being filled
+     */
+    public List<FrameStore> getFrameStores() {
+        return frameStores;
+    }
+    
+    public SessionMonitor getSessionMonitor() {
+        return sessionMonitor;
+    }
+    
+    public DeploymentManager getDeployments() {
+        return deployments;
     }
     
     public ConcurrentHashMap<String, VideoSession> getActiveSessions() {
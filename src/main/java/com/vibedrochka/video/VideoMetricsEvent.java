@@ -0,0 +1,71 @@
+package com.vibedrochka.video;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event with the plugin-wide metrics, emitted once per second
+ */
+@Name("com.vibedrochka.VideoMetrics")
+@Label("Video Metrics")
+@Category({"VibeDrochka", "Playback"})
+@Description("Playback cost, memory and processing queue of all video walls")
+@StackTrace(false)
+class VideoMetricsEvent extends Event {
+
+    @Label("Playing Walls")
+    int playingSessions;
+
+    @Label("Suspended Walls")
+    int suspendedSessions;
+
+    @Label("Tick Time")
+    @Description("Main-thread time per tick of all playing walls together")
+    @Timespan(Timespan.NANOSECONDS)
+    long tickNanos;
+
+    @Label("Maps Sent Per Second")
+    double mapsPerSecond;
+
+    @Label("Maps Sent")
+    long mapsSent;
+
+    @Label("Bytes Sent")
+    @DataAmount
+    long bytesSent;
+
+    @Label("Dropped Frames")
+    long droppedFrames;
+
+    @Label("Heap Bytes")
+    @DataAmount
+    long heapBytes;
+
+    @Label("Off-Heap Bytes")
+    @DataAmount
+    long offHeapBytes;
+
+    @Label("Frame Cache Bytes")
+    @Description("Heap used by decoded frames")
+    @DataAmount
+    long frameCacheBytes;
+
+    @Label("Frame Cache Hits")
+    long frameCacheHits;
+
+    @Label("Frame Cache Misses")
+    @Description("Frames that had to be decoded when a wall needed them")
+    long frameCacheMisses;
+
+    @Label("Queued Jobs")
+    int queuedJobs;
+
+    @Label("Running Jobs")
+    int runningJobs;
+}
@@ -1,121 +1,68 @@
 package com.vibedrochka.video;
 
-import com.vibedrochka.VibeDrochkaPlugin;
-import org.bukkit.Bukkit;
 import org.bukkit.map.MapCanvas;
 import org.bukkit.map.MapRenderer;
 import org.bukkit.map.MapView;
 import org.bukkit.entity.Player;
 
-import java.awt.*;
-import java.awt.image.BufferedImage;
-
-public class VideoRenderer extends MapRenderer {
-    
-    private final VibeDrochkaPlugin plugin;
-    private BufferedImage currentFrame;
-    private boolean needsUpdate = true;
-    
-    public VideoRenderer(VibeDrochkaPlugin plugin) {
-        super(false); // Not contextual
-        this.plugin = plugin;
-    }
-    
-    @Override
-    public void render(MapView map, MapCanvas canvas, Player player) {
-        if (currentFrame != null) {
-            // Draw the current frame to the map canvas
-            canvas.drawImage(0, 0, currentFrame);
-        }
-    }
+/**
+ * Map renderers that draw a video wall, one per map
+ */
+public final class VideoRenderer {
     
-    public void updateFrame(BufferedImage frame) {
-        this.currentFrame = frame;
-        this.needsUpdate = true;
+    private VideoRenderer() {
     }
     
     /**
-     * Creates a custom renderer for a specific map position in the video grid
+     * Draws one map of a wall; the session hands it the tile for its grid position
      */
     public static class GridVideoRenderer extends MapRenderer {
-        private final VibeDrochkaPlugin plugin;
-        private final int gridX, gridY;
-        private final int totalGridWidth, totalGridHeight;
-        private BufferedImage currentFrame;
-        private boolean needsUpdate = true;
+        private volatile byte[] pixels;
+        private volatile boolean needsUpdate;
         
-        public GridVideoRenderer(VibeDrochkaPlugin plugin, int gridX, int gridY, int totalGridWidth, int totalGridHeight) {
-            super(false);
-            this.plugin = plugin;
-            this.gridX = gridX;
-            this.gridY = gridY;
-            this.totalGridWidth = totalGridWidth;
-            this.totalGridHeight = totalGridHeight;
+        public GridVideoRenderer() {
+            super(false); // Not contextual, so every player's render uses the same canvas
         }
         
+        /**
+         * Called by the server for every player the map is sent to. The canvas is shared and
+         * keeps its pixels, so only the first call after a tile change copies anything; the
+         * others, and every call while the wall shows the same tile, return right away.
+         */
         @Override
         public void render(MapView map, MapCanvas canvas, Player player) {
-            if (currentFrame != null) {
-                // Calculate which part of the full image this map should display
-                int mapSize = 128; // Maps are 128x128 pixels
-                
-                // The gridX,gridY represent the column,row in the item frame grid
-                // We want to extract the corresponding portion from the source image
-                int sourceX = gridX * mapSize;
-                int sourceY = gridY * mapSize;
-                
-                // Debug output (only log occasionally to avoid spam)
-                if (System.currentTimeMillis() % 5000 < 50) { // Log every ~5 seconds
-                    plugin.getLogger().info("Rendering grid[col=" + gridX + ",row=" + gridY + "] from source (" + sourceX + "," + sourceY + ") of " + 
-                                           currentFrame.getWidth() + "x" + currentFrame.getHeight() + " image");
-                    plugin.getLogger().info("Expected: grid[0,0]=top-left image, grid[1,0]=next right, etc.");
-                }
-                
-                // Extract the portion of the frame for this map position
-                BufferedImage mapPortion = extractMapPortion(currentFrame, sourceX, sourceY, mapSize, mapSize);
-                
-                if (mapPortion != null) {
-                    canvas.drawImage(0, 0, mapPortion);
-                } else {
-                    // Fill with a test pattern if extraction fails
-                    canvas.setPixel(0, 0, (byte) (gridX * 50 + gridY * 10)); // Different colors for different positions
-                }
+            if (!needsUpdate) {
+                return;
+            }
+            // Cleared before reading the tile, so a change made meanwhile is drawn next time
+            needsUpdate = false;
+            
+            byte[] tile = pixels;
+            if (tile != null) {
+                // The tile is already palette-matched at ingestion, so this is a straight copy
+                drawTile(canvas, tile);
             }
         }
         
-        public void updateFrame(BufferedImage fullFrame) {
-            this.currentFrame = fullFrame;
+        /**
+         * Shows a tile prepared by the session's {@link FramePipeline}. Only the reference is
+         * kept, so this costs the same no matter how large the tile is.
+         * @param tile 128x128 palette bytes that are not modified while shown
+         */
+        public void setTile(byte[] tile) {
+            this.pixels = tile;
             this.needsUpdate = true;
         }
-        
-        private BufferedImage extractMapPortion(BufferedImage fullImage, int x, int y, int width, int height) {
-            try {
-                // Ensure we don't go out of bounds
-                int actualWidth = Math.min(width, fullImage.getWidth() - x);
-                int actualHeight = Math.min(height, fullImage.getHeight() - y);
-                
-                if (actualWidth <= 0 || actualHeight <= 0) {
-                    return null;
-                }
-                
-                // Extract the subimage
-                BufferedImage portion = fullImage.getSubimage(x, y, actualWidth, actualHeight);
-                
-                // If the portion is smaller than the map size, create a black background
-                if (actualWidth < width || actualHeight < height) {
-                    BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-                    Graphics2D g2d = result.createGraphics();
-                    g2d.setColor(Color.BLACK);
-                    g2d.fillRect(0, 0, width, height);
-                    g2d.drawImage(portion, 0, 0, null);
-                    g2d.dispose();
-                    return result;
-                }
-                
-                return portion;
-            } catch (Exception e) {
-                plugin.getLogger().warning("Failed to extract map portion: " + e.getMessage());
-                return null;
+    }
+    
+    /**
+     * Copies a 128x128 tile of palette bytes onto the canvas
+     */
+    static void drawTile(MapCanvas canvas, byte[] tile) {
+        int index = 0;
+        for (int y = 0; y < MapFrame.MAP_SIZE; y++) {
+            for (int x = 0; x < MapFrame.MAP_SIZE; x++) {
+                canvas.setPixel(x, y, tile[index++]);
             }
         }
     }
@@ -2,32 +2,88 @@ package com.vibedrochka.video;
 
 import com.vibedrochka.VibeDrochkaPlugin;
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.ItemFrame;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.map.MapView;
 import org.bukkit.scheduler.BukkitTask;
 
-import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 public class VideoSession {
     
+    private static final long NANOS_PER_TICK = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long QUALITY_CHECK_TICKS = 20;
+    
     private final VibeDrochkaPlugin plugin;
+    private final String sessionId;
+    private final VideoAsset asset;
     private final VideoData videoData;
-    private final List<BufferedImage> frames;
+    private final FrameStore frames;
     private final List<List<ItemFrame>> frameGrid;
     private final VideoRenderer.GridVideoRenderer[][] renderers;
     private final MapView[][] mapViews;
+    private final FramePipeline pipeline;
+    private final SessionMetrics metrics = new SessionMetrics();
+    
+    // Where the wall is, so updates only go to players that can actually see it
+    private final World world;
+    private final int minX, minY, minZ, maxX, maxY, maxZ;
+    private final double viewRadiusSquared;
+    
+    // Players that can see the wall, with the tiles each of them still has to receive
+    private final Map<UUID, ViewerState> viewers = new LinkedHashMap<>();
     
+    // Block centre of every tile, row-major, for sending closer tiles first
+    private final double[] tileX, tileY, tileZ;
+    private final double[] tileDistances;
+    private final int[] selectedTiles;
+    
+    private final PlaybackClock clock;
     private BukkitTask playbackTask;
     private int currentFrameIndex = 0;
     private boolean isPlaying = false;
     
-    public VideoSession(VibeDrochkaPlugin plugin, VideoData videoData, List<BufferedImage> frames, List<List<ItemFrame>> frameGrid) {
+    private final int rebufferFrames;
+    
+    // Adaptive quality: viewers get fewer updates while the server or their connection struggles
+    private final boolean adaptive;
+    private final double adaptiveMinTps;
+    private final int adaptiveMaxPing;
+    private final int maxQualityLevel;
+    private final boolean alternateTiles;
+    private final long recoverTicks;
+    private long lastQualityCheck = -QUALITY_CHECK_TICKS;
+    
+    // While the video is still being decoded, playback can catch up with the decoder and has
+    // to wait for more frames; this is the frame it waits for, or -1
+    private long bufferingAt = -1;
+    
+    // Suspended sessions have no timer at all; they resume when the wall has an audience again
+    private boolean suspended = false;
+    private boolean released = false;
+    
+    /**
+     * @param asset The video to play; the session takes over one reference and gives it back when stopped
+     */
+    public VideoSession(VibeDrochkaPlugin plugin, String sessionId, VideoData videoData, 
+                        VideoAsset asset, List<List<ItemFrame>> frameGrid) {
         this.plugin = plugin;
+        this.sessionId = sessionId;
+        this.asset = asset;
         this.videoData = videoData;
-        this.frames = frames;
+        this.frames = asset.getFrames();
         this.frameGrid = frameGrid;
         
         int gridHeight = frameGrid.size();
@@ -35,40 +91,89 @@ public class VideoSession {
         
         this.renderers = new VideoRenderer.GridVideoRenderer[gridHeight][gridWidth];
         this.mapViews = new MapView[gridHeight][gridWidth];
+        this.pipeline = new FramePipeline(frames, plugin.getVideoManager().getFramePreparer(), plugin.getLogger());
+        this.clock = new PlaybackClock(videoData.getFramerate());
+        this.rebufferFrames = Math.max(1, plugin.getConfig().getInt("streaming.rebuffer-frames", 40));
+        this.adaptive = plugin.getConfig().getBoolean("adaptive.enabled", true);
+        this.adaptiveMinTps = plugin.getConfig().getDouble("adaptive.min-tps", 18.5);
+        this.adaptiveMaxPing = plugin.getConfig().getInt("adaptive.max-ping-ms", 250);
+        this.maxQualityLevel = Math.max(1, plugin.getConfig().getInt("adaptive.max-frame-divisor", 4)) - 1;
+        this.alternateTiles = plugin.getConfig().getBoolean("adaptive.alternate-tiles", false);
+        this.recoverTicks = Math.max(1, plugin.getConfig().getLong("adaptive.recover-seconds", 5)) * 20L;
+        
+        // Block-aligned bounding box around every frame of the wall
+        Location origin = frameGrid.get(0).get(0).getLocation();
+        int lowX = origin.getBlockX(), lowY = origin.getBlockY(), lowZ = origin.getBlockZ();
+        int highX = lowX, highY = lowY, highZ = lowZ;
+        for (List<ItemFrame> row : frameGrid) {
+            for (ItemFrame frame : row) {
+                Location location = frame.getLocation();
+                lowX = Math.min(lowX, location.getBlockX());
+                lowY = Math.min(lowY, location.getBlockY());
+                lowZ = Math.min(lowZ, location.getBlockZ());
+                highX = Math.max(highX, location.getBlockX());
+                highY = Math.max(highY, location.getBlockY());
+                highZ = Math.max(highZ, location.getBlockZ());
+            }
+        }
+        this.world = origin.getWorld();
+        this.minX = lowX;
+        this.minY = lowY;
+        this.minZ = lowZ;
+        this.maxX = highX + 1;
+        this.maxY = highY + 1;
+        this.maxZ = highZ + 1;
+        
+        double viewRadius = plugin.getConfig().getDouble("playback.view-radius", 64);
+        this.viewRadiusSquared = viewRadius * viewRadius;
+        
+        int tileCount = frames.getColumns() * frames.getRows();
+        this.tileX = new double[tileCount];
+        this.tileY = new double[tileCount];
+        this.tileZ = new double[tileCount];
+        this.tileDistances = new double[tileCount];
+        this.selectedTiles = new int[tileCount];
+        for (int y = 0; y < gridHeight && y < frames.getRows(); y++) {
+            for (int x = 0; x < gridWidth && x < frames.getColumns(); x++) {
+                Location location = frameGrid.get(y).get(x).getLocation();
+                int tile = y * frames.getColumns() + x;
+                tileX[tile] = location.getBlockX() + 0.5;
+                tileY[tile] = location.getBlockY() + 0.5;
+                tileZ[tile] = location.getBlockZ() + 0.5;
+            }
+        }
         
         initializeMaps();
     }
     
     private void initializeMaps() {
-        plugin.getLogger().info("Initializing " + frameGrid.size() + " rows with " + frameGrid.get(0).size() + " columns");
-        
         for (int y = 0; y < frameGrid.size(); y++) {
             List<ItemFrame> row = frameGrid.get(y);
-            plugin.getLogger().info("Processing row " + y + " with " + row.size() + " frames");
             
             for (int x = 0; x < row.size(); x++) {
                 ItemFrame frame = row.get(x);
                 
-                plugin.getLogger().info("Creating map for position [" + x + "," + y + "] at location " + 
-                                       frame.getLocation().getBlockX() + "," + frame.getLocation().getBlockY() + "," + frame.getLocation().getBlockZ());
-                plugin.getLogger().info("This frame will render image portion (" + (x * 128) + "," + (y * 128) + ") to (" + ((x + 1) * 128) + "," + ((y + 1) * 128) + ")");
-                
-                // Create a new map view
-                MapView mapView = Bukkit.createMap(frame.getWorld());
+                // Reuse the map already in the frame (a wall restored after a restart),
+                // otherwise create a new map view
+                MapView mapView = getExistingMapView(frame);
+                boolean reused = mapView != null;
+                if (!reused) {
+                    mapView = Bukkit.createMap(frame.getWorld());
+                }
                 mapViews[y][x] = mapView;
                 
                 // Create a custom renderer for this grid position
-                VideoRenderer.GridVideoRenderer renderer = new VideoRenderer.GridVideoRenderer(
-                    plugin, x, y, videoData.getWidth(), videoData.getHeight()
-                );
+                VideoRenderer.GridVideoRenderer renderer = new VideoRenderer.GridVideoRenderer();
                 renderers[y][x] = renderer;
                 
-                plugin.getLogger().info("Created renderer for grid[" + x + "," + y + "] - this will render image portion (" + (x * 128) + "," + (y * 128) + ")");
-                
                 // Clear existing renderers and add our custom one
                 mapView.getRenderers().clear();
                 mapView.addRenderer(renderer);
                 
+                if (reused) {
+                    continue;
+                }
+                
                 // Create map item and place it in the frame
                 ItemStack mapItem = new ItemStack(org.bukkit.Material.FILLED_MAP);
                 org.bukkit.inventory.meta.MapMeta mapMeta = (org.bukkit.inventory.meta.MapMeta) mapItem.getItemMeta();
@@ -81,108 +186,424 @@ public class VideoSession {
         }
     }
     
-    public void startPlayback() {
-        if (isPlaying) {
-            return;
-        }
-        
-        isPlaying = true;
-        currentFrameIndex = 0;
-        
-        // Calculate delay between frames (in ticks, 20 ticks = 1 second)
-        long delayTicks = Math.max(1, 20L / videoData.getFramerate());
-        
+    private void scheduleTask() {
+        // Run every tick and let the clock decide which source frame is due. Ticks where
+        // the current frame is still due cost next to nothing.
         playbackTask = plugin.getServer().getScheduler().runTaskTimer(plugin, new Runnable() {
             @Override
             public void run() {
-                if (!isPlaying || frames.isEmpty()) {
-                    return;
-                }
+                SessionTickEvent event = new SessionTickEvent();
+                event.begin();
+                long started = System.nanoTime();
                 
-                // Get current frame
-                BufferedImage currentFrame = frames.get(currentFrameIndex);
+                tick(started);
                 
-                // Update all renderers with the current frame
-                for (int y = 0; y < renderers.length; y++) {
-                    for (int x = 0; x < renderers[y].length; x++) {
-                        if (renderers[y][x] != null) {
-                            renderers[y][x].updateFrame(currentFrame);
-                        }
-                    }
+                metrics.recordTick(System.nanoTime() - started, clock.getDroppedFrames());
+                event.end();
+                if (event.shouldCommit()) {
+                    event.sessionId = sessionId;
+                    event.video = videoData.getName();
+                    event.frame = currentFrameIndex;
+                    event.viewers = viewers.size();
+                    event.mapsSent = metrics.getMapsSentLastTick();
+                    event.pendingUpdates = getPendingUpdates();
+                    event.commit();
                 }
-                
-                // Force map updates by marking them as dirty
-                for (int y = 0; y < mapViews.length; y++) {
-                    for (int x = 0; x < mapViews[y].length; x++) {
-                        if (mapViews[y][x] != null) {
-                            // Force the map to update for all players
-                            for (Player onlinePlayer : plugin.getServer().getOnlinePlayers()) {
-                                onlinePlayer.sendMap(mapViews[y][x]);
-                            }
-                        }
-                    }
+            }
+        }, 0L, 1L);
+    }
+    
+    /**
+     * Advances playback by one server tick and marks the tiles each viewer is missing;
+     * the {@link MapSendScheduler} sends them
+     * @param now Time of the tick in nanoseconds
+     */
+    private void tick(long now) {
+        if (!isPlaying) {
+            return;
+        }
+        
+        // On a schedule of its own: below 20 fps most ticks have no frame due, and a struggling
+        // server or connection is exactly when playback buffers
+        long sendTick = plugin.getVideoManager().getSendScheduler().getTick();
+        if (adaptive && sendTick - lastQualityCheck >= QUALITY_CHECK_TICKS) {
+            lastQualityCheck = sendTick;
+            boolean serverBehind = plugin.getVideoManager().getTickMonitor().getTps() < adaptiveMinTps;
+            for (ViewerState viewer : viewers.values()) {
+                adjustQuality(viewer, serverBehind, sendTick);
+            }
+        }
+        
+        int available = frames.getFrameCount();
+        if (available == 0) {
+            return;
+        }
+        
+        boolean complete = frames.isComplete();
+        
+        if (bufferingAt >= 0) {
+            // Wait until the decoder is far enough ahead, or done
+            if (!complete && available < bufferingAt + rebufferFrames) {
+                return;
+            }
+            clock.start(now, bufferingAt);
+            bufferingAt = -1;
+        }
+        
+        long frame = clock.advance(now);
+        if (frame < 0) {
+            return;
+        }
+        
+        if (!complete && frame >= available) {
+            // Caught up with the decoder: keep the last frame on screen and buffer
+            bufferingAt = available;
+            return;
+        }
+        
+        // Loop the video, but only once all of it is known
+        currentFrameIndex = (int) (frame % available);
+        
+        // Find who is close enough to see the wall; with nobody around there is nothing to do
+        List<Player> audience = getAudience();
+        viewers.keySet().retainAll(audienceIds(audience));
+        if (audience.isEmpty()) {
+            return;
+        }
+        
+        FramePipeline.PreparedFrame current = showPreparedFrame(pipeline, renderers, frames.getColumns(), viewers.values(), sendTick);
+        
+        // Have the workers prepare the next frame while this one is on screen
+        long upcoming = current == null ? frame : Math.max(frame + 1, clock.frameAt(now + NANOS_PER_TICK));
+        if (complete || upcoming < available) {
+            pipeline.request((int) (upcoming % available));
+        }
+        
+        if (current == null) {
+            return;
+        }
+        
+        // Players that just came into range are missing every map
+        for (Player player : audience) {
+            if (!viewers.containsKey(player.getUniqueId())) {
+                ViewerState viewer = new ViewerState(this, player, frames.getColumns(), tileDistances.length);
+                viewers.put(player.getUniqueId(), viewer);
+                viewer.markAll(current, sendTick);
+            }
+        }
+    }
+    
+    /**
+     * Shows the frame the workers prepared: renderers just switch tile references, and viewers
+     * are marked for the tiles that changed. This is the main thread's share of a tick once a
+     * frame is due.
+     * @param columns Number of maps horizontally
+     * @param viewers Viewers that were already watching the wall
+     * @return The frame on screen, or null while none has been prepared
+     */
+    static FramePipeline.PreparedFrame showPreparedFrame(FramePipeline pipeline, VideoRenderer.GridVideoRenderer[][] renderers,
+                                                         int columns, Collection<ViewerState> viewers, long tick) {
+        FramePipeline.PreparedFrame shown = pipeline.take();
+        if (shown != null) {
+            int[] changedTiles = shown.getChangedTiles();
+            for (int tile : changedTiles) {
+                VideoRenderer.GridVideoRenderer renderer = cell(renderers, columns, tile);
+                if (renderer != null) {
+                    renderer.setTile(shown.getTile(tile));
                 }
-                
-                // Move to next frame
-                currentFrameIndex++;
-                if (currentFrameIndex >= frames.size()) {
-                    // Loop the video
-                    currentFrameIndex = 0;
+            }
+            if (changedTiles.length > 0) {
+                for (ViewerState viewer : viewers) {
+                    viewer.markChanged(changedTiles, shown, tick);
                 }
             }
-        }, 0L, delayTicks);
+        }
+        return pipeline.getCurrent();
+    }
+    
+    /**
+     * Lowers a viewer's refresh rate one step while the server is behind or their ping is too
+     * high, and raises it one step once things have been fine for a while
+     */
+    private void adjustQuality(ViewerState viewer, boolean serverBehind, long tick) {
+        boolean struggling = serverBehind || viewer.getPlayer().getPing() > adaptiveMaxPing;
+        int level = viewer.getQualityLevel();
         
-        plugin.getLogger().info("Started video playback for: " + videoData.getName() + 
-                               " (Framerate: " + videoData.getFramerate() + " FPS, Delay: " + delayTicks + " ticks)");
-        plugin.getLogger().info("Video has " + frames.size() + " frames, grid size: " + videoData.getWidth() + "x" + videoData.getHeight());
+        if (struggling) {
+            if (level < maxQualityLevel) {
+                viewer.setQuality(level + 1, alternateTiles, tick);
+            }
+        } else if (level > 0 && tick - viewer.getQualityChangedAt() >= recoverTicks) {
+            viewer.setQuality(level - 1, alternateTiles, tick);
+        }
+    }
+    
+    /**
+     * Sends a viewer the most urgent of the tiles they are missing. Called by the {@link MapSendScheduler}.
+     * @param budget Most maps to send
+     */
+    void sendUpdates(ViewerState viewer, int budget, long tick) {
+        FramePipeline.PreparedFrame current = pipeline.getCurrent();
+        if (current == null) {
+            return;
+        }
+        long started = System.nanoTime();
         
-        // Log first frame to verify it's working
-        if (!frames.isEmpty()) {
-            BufferedImage firstFrame = frames.get(0);
-            plugin.getLogger().info("First frame size: " + firstFrame.getWidth() + "x" + firstFrame.getHeight());
+        // Distances only matter for ranking stale tiles against each other
+        if (!viewer.fitsBudget(budget)) {
+            Location location = viewer.getPlayer().getLocation();
+            for (int i = 0; i < viewer.getStaleCount(); i++) {
+                int tile = viewer.getStaleTile(i);
+                double dx = tileX[tile] - location.getX();
+                double dy = tileY[tile] - location.getY();
+                double dz = tileZ[tile] - location.getZ();
+                tileDistances[tile] = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            }
         }
+        
+        int sent = sendTiles(viewer, current, budget, tileDistances, tick, selectedTiles, mapViews, frames.getColumns());
+        metrics.recordSends(sent, System.nanoTime() - started);
     }
     
-    private void updateMapsForPlayers() {
-        // Force update for all map views
-        for (int y = 0; y < mapViews.length; y++) {
-            for (int x = 0; x < mapViews[y].length; x++) {
-                if (mapViews[y][x] != null) {
-                    // The map will be automatically updated when players look at it
-                    // due to our custom renderer
-                }
+    /**
+     * Refreshes a viewer with the most urgent of their stale tiles
+     * @param current The frame on screen
+     * @param budget Most maps to send
+     * @param distances Distance from the player to each tile, see {@link ViewerState#selectTiles}
+     * @param selected Scratch space for one index per tile
+     * @param columns Number of maps horizontally
+     * @return Number of maps sent
+     */
+    static int sendTiles(ViewerState viewer, FramePipeline.PreparedFrame current, int budget, double[] distances,
+                         long tick, int[] selected, MapView[][] mapViews, int columns) {
+        int count = viewer.selectTiles(budget, distances, tick, selected);
+        viewer.markRefreshed(tick);
+        int sent = 0;
+        for (int i = 0; i < count; i++) {
+            int tile = selected[i];
+            MapView mapView = cell(mapViews, columns, tile);
+            if (mapView != null) {
+                viewer.getPlayer().sendMap(mapView);
+                sent++;
             }
+            // The renderer shows the current frame's tile, so that is what the player has now
+            viewer.markSent(tile, current.getTileHash(tile));
+        }
+        return sent;
+    }
+    
+    /**
+     * @return The grid cell of a row-major tile index, or null if the grid is smaller than the video
+     */
+    private static <T> T cell(T[][] grid, int columns, int tile) {
+        int x = tile % columns;
+        int y = tile / columns;
+        return y < grid.length && x < grid[y].length ? grid[y][x] : null;
+    }
+    
+    private MapView getExistingMapView(ItemFrame frame) {
+        ItemStack item = frame.getItem();
+        if (item == null || item.getType() != org.bukkit.Material.FILLED_MAP || !item.hasItemMeta()) {
+            return null;
         }
+        org.bukkit.inventory.meta.MapMeta mapMeta = (org.bukkit.inventory.meta.MapMeta) item.getItemMeta();
+        return mapMeta != null && mapMeta.hasMapView() ? mapMeta.getMapView() : null;
+    }
+    
+    public void startPlayback() {
+        startPlayback(0);
+    }
+    
+    /**
+     * Starts playing from the given frame, e.g. the position saved before a restart
+     */
+    public void startPlayback(int startFrame) {
+        if (isPlaying) {
+            return;
+        }
+        
+        isPlaying = true;
+        currentFrameIndex = startFrame;
+        bufferingAt = -1;
+        viewers.clear();
+        clock.start(System.nanoTime(), startFrame);
+        
+        scheduleTask();
+        
+        plugin.getLogger().info("Started video playback for: " + videoData.getName() + 
+                               " (Framerate: " + videoData.getFramerate() + " FPS)");
+        plugin.getLogger().info("Video has " + frames.getFrameCount() + " frames, grid size: " + videoData.getWidth() + "x" + videoData.getHeight());
+        plugin.getLogger().info("Frame size: " + frames.getColumns() + "x" + frames.getRows() + " maps");
+    }
+    
+    /**
+     * @return Players in the wall's world within the configured view radius of its bounding box
+     */
+    private List<Player> getAudience() {
+        List<Player> audience = new ArrayList<>();
+        if (world == null) {
+            return audience;
+        }
+        
+        for (Player player : world.getPlayers()) {
+            Location location = player.getLocation();
+            double dx = distanceOutside(location.getX(), minX, maxX);
+            double dy = distanceOutside(location.getY(), minY, maxY);
+            double dz = distanceOutside(location.getZ(), minZ, maxZ);
+            if (dx * dx + dy * dy + dz * dz <= viewRadiusSquared) {
+                audience.add(player);
+            }
+        }
+        return audience;
+    }
+    
+    private static double distanceOutside(double value, int min, int max) {
+        if (value < min) {
+            return min - value;
+        }
+        if (value > max) {
+            return value - max;
+        }
+        return 0;
+    }
+    
+    private static Set<UUID> audienceIds(List<Player> audience) {
+        Set<UUID> ids = new HashSet<>();
+        for (Player player : audience) {
+            ids.add(player.getUniqueId());
+        }
+        return ids;
     }
     
     public void pausePlayback() {
         isPlaying = false;
+        clock.pause(System.nanoTime());
     }
     
     public void resumePlayback() {
-        if (!isPlaying && playbackTask != null && !playbackTask.isCancelled()) {
+        if (!isPlaying && (suspended || (playbackTask != null && !playbackTask.isCancelled()))) {
+            // A suspended session keeps its clock paused until it is woken up
+            if (!suspended) {
+                clock.resume(System.nanoTime());
+            }
             isPlaying = true;
         }
     }
     
+    /**
+     * Cancels the playback timer while nobody can see the wall. The playback position is kept.
+     */
+    public void suspend() {
+        if (suspended || playbackTask == null) {
+            return;
+        }
+        
+        playbackTask.cancel();
+        playbackTask = null;
+        suspended = true;
+        clock.pause(System.nanoTime());
+        
+        // Whoever sees the wall next needs a full snapshot
+        viewers.clear();
+    }
+    
+    /**
+     * Restarts the playback timer after {@link #suspend()}, continuing from the same position
+     */
+    public void wake() {
+        if (!suspended) {
+            return;
+        }
+        
+        suspended = false;
+        if (isPlaying) {
+            clock.resume(System.nanoTime());
+        }
+        scheduleTask();
+    }
+    
+    public boolean isSuspended() {
+        return suspended;
+    }
+    
+    /**
+     * @return Whether every chunk the wall stands in is loaded
+     */
+    public boolean isLoaded() {
+        if (world == null) {
+            return false;
+        }
+        for (int chunkX = minX >> 4; chunkX <= (maxX - 1) >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= (maxZ - 1) >> 4; chunkZ++) {
+                if (!world.isChunkLoaded(chunkX, chunkZ)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * @return Whether part of the wall stands in the given chunk
+     */
+    public boolean isInChunk(World chunkWorld, int chunkX, int chunkZ) {
+        return chunkWorld.equals(world) &&
+               chunkX >= minX >> 4 && chunkX <= (maxX - 1) >> 4 &&
+               chunkZ >= minZ >> 4 && chunkZ <= (maxZ - 1) >> 4;
+    }
+    
+    /**
+     * @return Whether any player is within view radius of the wall
+     */
+    public boolean hasAudience() {
+        return !getAudience().isEmpty();
+    }
+    
     public void stop() {
+        stop(true);
+    }
+    
+    /**
+     * Stops playback
+     * @param clear Whether to empty the item frames; walls that will be restored later keep their maps
+     */
+    public void stop(boolean clear) {
         isPlaying = false;
+        suspended = false;
         if (playbackTask != null) {
             playbackTask.cancel();
             playbackTask = null;
         }
         
+        pipeline.close();
+        
+        // Let the asset unload once no other wall plays it, and keep this wall's counters in the totals
+        if (!released) {
+            released = true;
+            plugin.getVideoManager().getAssets().release(asset);
+            plugin.getVideoManager().getMetrics().retire(metrics);
+        }
+        
         // Clear the item frames
-        clearFrames();
+        if (clear) {
+            clearFrames();
+        }
         
-        plugin.getLogger().info("Stopped video playback for: " + videoData.getName());
+        plugin.getLogger().info("Stopped video playback for: " + videoData.getName() + 
+                               " (presented " + clock.getPresentedFrames() + " frames, dropped " + clock.getDroppedFrames() + 
+                               ", duplicated " + clock.getDuplicatedFrames() + ")");
     }
     
     private void clearFrames() {
+        // The frames the session started with are stale once their chunk was reloaded, so look them up again
         for (List<ItemFrame> row : frameGrid) {
             for (ItemFrame frame : row) {
-                if (frame != null && frame.isValid()) {
-                    frame.setItem(null);
+                if (frame == null) {
+                    continue;
+                }
+                Entity entity = plugin.getServer().getEntity(frame.getUniqueId());
+                if (entity instanceof ItemFrame && entity.isValid()) {
+                    ((ItemFrame) entity).setItem(null);
                 }
             }
         }
@@ -192,12 +613,104 @@ public class VideoSession {
         return isPlaying;
     }
     
+    /**
+     * @return Whether playback is waiting for the decoder to produce more frames
+     */
+    public boolean isBuffering() {
+        return bufferingAt >= 0;
+    }
+    
+    /**
+     * @return Number of players that currently receive this wall's map updates
+     */
+    public int getViewerCount() {
+        return viewers.size();
+    }
+    
+    /**
+     * @return Players that can see the wall, with what each of them is missing
+     */
+    Collection<ViewerState> getViewers() {
+        return viewers.values();
+    }
+    
+    /**
+     * @return Number of viewers that currently get fewer updates than the video's frame rate
+     */
+    public int getDegradedViewers() {
+        int degraded = 0;
+        for (ViewerState viewer : viewers.values()) {
+            if (viewer.getQualityLevel() > 0) {
+                degraded++;
+            }
+        }
+        return degraded;
+    }
+    
+    /**
+     * @return Map updates waiting to be sent, over all viewers
+     */
+    public int getPendingUpdates() {
+        int pending = 0;
+        for (ViewerState viewer : viewers.values()) {
+            pending += viewer.getStaleCount();
+        }
+        return pending;
+    }
+    
+    /**
+     * @return Main-thread cost and traffic of this wall
+     */
+    public SessionMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * @return Approximate heap bytes held by this wall's prepared frames
+     */
+    public long getHeapBytes() {
+        return pipeline.getHeapBytes();
+    }
+    
     public int getCurrentFrame() {
         return currentFrameIndex;
     }
     
+    /**
+     * @return Source frames skipped because they were due while the server was behind
+     */
+    public long getDroppedFrames() {
+        return clock.getDroppedFrames();
+    }
+    
+    /**
+     * @return Ticks on which the previous frame stayed on screen because no new one was due
+     */
+    public long getDuplicatedFrames() {
+        return clock.getDuplicatedFrames();
+    }
+    
     public int getTotalFrames() {
-        return frames.size();
+        return frames.getFrameCount();
+    }
+    
+    public String getSessionId() {
+        return sessionId;
+    }
+    
+    /**
+     * @return Cache key of the processed video this session plays
+     */
+    public String getAssetKey() {
+        return asset.getKey();
+    }
+    
+    public List<List<ItemFrame>> getFrameGrid() {
+        return frameGrid;
+    }
+    
+    public World getWorld() {
+        return world;
     }
     
     public VideoData getVideoData() {
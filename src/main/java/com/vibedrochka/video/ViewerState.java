@@ -0,0 +1,259 @@
+package com.vibedrochka.video;
+
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+
+/**
+ * What one player has seen of one video wall.
+ * For every tile it remembers the hash of the content last sent to the player; tiles whose
+ * content on the wall differs from that are stale and wait for the {@link MapSendScheduler}.
+ * A tile that changes several times before it is sent is still sent only once, showing
+ * whatever is on the wall at that moment, so a tight budget lowers the frame rate instead of
+ * queueing up updates.
+ *
+ * The session can also lower the player's quality: at quality level n the player is only
+ * refreshed every n+1 ticks, and with alternate tiles each refresh covers only one half of a
+ * checkerboard of tiles.
+ */
+class ViewerState {
+
+    // Distance, in blocks, at which a tile's priority is halved
+    private static final double DISTANCE_HALVING_BLOCKS = 16.0;
+
+    private final VideoSession session;
+    private final Player player;
+    private final int columns;
+    private final long[] sentHashes;
+    private final boolean[] sent;
+
+    // Stale tiles as a dense list, with each tile's position in it (-1 if up to date)
+    private final int[] staleTiles;
+    private final int[] stalePositions;
+    private int staleCount;
+
+    // Per stale tile: tick it became stale, and how many changes the player has missed since
+    private final long[] staleSince;
+    private final int[] missedChanges;
+
+    private int qualityLevel;
+    private boolean alternateTiles;
+    private long qualityChangedAt;
+    private long lastRefresh = Integer.MIN_VALUE; // Due right away
+    private int nextHalf; // Checkerboard half the next refresh covers with alternate tiles
+
+    /**
+     * @param columns Number of maps horizontally, to tell the checkerboard halves apart
+     */
+    ViewerState(VideoSession session, Player player, int columns, int tileCount) {
+        this.session = session;
+        this.player = player;
+        this.columns = columns;
+        this.sentHashes = new long[tileCount];
+        this.sent = new boolean[tileCount];
+        this.staleTiles = new int[tileCount];
+        this.stalePositions = new int[tileCount];
+        this.staleSince = new long[tileCount];
+        this.missedChanges = new int[tileCount];
+        Arrays.fill(stalePositions, -1);
+    }
+
+    VideoSession getSession() {
+        return session;
+    }
+
+    Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * Marks every tile the player has not seen in its current state, e.g. for a new viewer
+     */
+    void markAll(FramePipeline.PreparedFrame frame, long tick) {
+        for (int tile = 0; tile < sentHashes.length; tile++) {
+            update(tile, frame.getTileHash(tile), tick);
+        }
+    }
+
+    /**
+     * Marks tiles that changed on the wall
+     */
+    void markChanged(int[] changedTiles, FramePipeline.PreparedFrame frame, long tick) {
+        for (int tile : changedTiles) {
+            update(tile, frame.getTileHash(tile), tick);
+        }
+    }
+
+    private void update(int tile, long hash, long tick) {
+        if (sent[tile] && sentHashes[tile] == hash) {
+            // Changed back to what the player already has
+            unmark(tile);
+            return;
+        }
+        if (stalePositions[tile] >= 0) {
+            missedChanges[tile]++;
+            return;
+        }
+        stalePositions[tile] = staleCount;
+        staleTiles[staleCount++] = tile;
+        staleSince[tile] = tick;
+        missedChanges[tile] = 0;
+    }
+
+    private void unmark(int tile) {
+        int position = stalePositions[tile];
+        if (position < 0) {
+            return;
+        }
+        int last = staleTiles[--staleCount];
+        staleTiles[position] = last;
+        stalePositions[last] = position;
+        stalePositions[tile] = -1;
+    }
+
+    /**
+     * Records that the player received a tile with the given content
+     */
+    void markSent(int tile, long hash) {
+        sent[tile] = true;
+        sentHashes[tile] = hash;
+        unmark(tile);
+    }
+
+    /**
+     * @return Number of tiles waiting to be sent
+     */
+    int getStaleCount() {
+        return staleCount;
+    }
+
+    /**
+     * @param index Position in the stale list, below {@link #getStaleCount()}
+     * @return The tile at that position
+     */
+    int getStaleTile(int index) {
+        return staleTiles[index];
+    }
+
+    /**
+     * @param level 0 for every tick, n to refresh every n+1 ticks
+     * @param alternate Whether each refresh covers only half of the tiles while the level is above 0
+     * @param tick Current tick
+     */
+    void setQuality(int level, boolean alternate, long tick) {
+        qualityLevel = level;
+        alternateTiles = alternate;
+        qualityChangedAt = tick;
+    }
+
+    int getQualityLevel() {
+        return qualityLevel;
+    }
+
+    /**
+     * @return Tick of the last quality change
+     */
+    long getQualityChangedAt() {
+        return qualityChangedAt;
+    }
+
+    /**
+     * @return Whether the player's quality level allows a refresh on this tick
+     */
+    boolean isDue(long tick) {
+        return tick - lastRefresh > qualityLevel;
+    }
+
+    /**
+     * Records that the player was refreshed on this tick
+     */
+    void markRefreshed(long tick) {
+        lastRefresh = tick;
+    }
+
+    /**
+     * @return Which checkerboard half the next refresh covers, or -1 for all tiles
+     */
+    private int refreshParity() {
+        if (!alternateTiles || qualityLevel == 0) {
+            return -1;
+        }
+        // Nothing left in the due half, so the refresh covers the other one
+        return countInHalf(nextHalf) > 0 ? nextHalf : nextHalf ^ 1;
+    }
+
+    private int countInHalf(int parity) {
+        int count = 0;
+        for (int i = 0; i < staleCount; i++) {
+            if (inRefresh(staleTiles[i], parity)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean inRefresh(int tile, int parity) {
+        return parity < 0 || ((tile % columns + tile / columns) & 1) == parity;
+    }
+
+    /**
+     * @return Number of stale tiles the next refresh may send
+     */
+    int getSendableCount() {
+        int parity = refreshParity();
+        return parity < 0 ? staleCount : countInHalf(parity);
+    }
+
+    /**
+     * @return Whether {@link #selectTiles} would pick every stale tile, so there is nothing to rank
+     */
+    boolean fitsBudget(int budget) {
+        return refreshParity() < 0 && budget >= staleCount;
+    }
+
+    /**
+     * Picks the stale tiles to send next, from the checkerboard half this refresh covers;
+     * the refresh after it covers the other half.
+     * Tiles that waited longest, missed the most changes and are closest to the player come first.
+     * @param budget Most tiles to pick
+     * @param distances Distance from the player to each tile, in blocks; only read for stale
+     *                  tiles, and not at all if {@link #fitsBudget(int)}
+     * @param tick Current tick
+     * @return Number of tiles written to the start of {@code selected}
+     */
+    int selectTiles(int budget, double[] distances, long tick, int[] selected) {
+        int parity = refreshParity();
+        if (parity < 0 && budget >= staleCount) {
+            System.arraycopy(staleTiles, 0, selected, 0, staleCount);
+            return staleCount;
+        }
+        if (parity >= 0) {
+            nextHalf = parity ^ 1;
+        }
+
+        // Keep the best tiles in descending order; the budget is small, so insertion is cheap
+        double[] scores = new double[budget];
+        int count = 0;
+        for (int i = 0; i < staleCount; i++) {
+            int tile = staleTiles[i];
+            if (!inRefresh(tile, parity)) {
+                continue;
+            }
+            double score = (1.0 + missedChanges[tile]) * (1.0 + tick - staleSince[tile])
+                         / (1.0 + distances[tile] / DISTANCE_HALVING_BLOCKS);
+            if (count == budget && score <= scores[count - 1]) {
+                continue;
+            }
+
+            int position = count < budget ? count++ : count - 1;
+            while (position > 0 && scores[position - 1] < score) {
+                scores[position] = scores[position - 1];
+                selected[position] = selected[position - 1];
+                position--;
+            }
+            scores[position] = score;
+            selected[position] = tile;
+        }
+        return count;
+    }
+}
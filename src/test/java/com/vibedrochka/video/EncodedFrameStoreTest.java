@@ -0,0 +1,229 @@
+package com.vibedrochka.video;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EncodedFrameStoreTest {
+
+    private static final int COLUMNS = 2;
+    private static final int ROWS = 2;
+    private static final int KEYFRAME_INTERVAL = 4;
+    private static final long FRAME_BYTES = COLUMNS * ROWS * (MapFrame.TILE_PIXELS + 8L);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EncodedFrameStore spool(FrameCache cache, MapFrame[] frames) throws IOException {
+        EncodedFrameStore store = EncodedFrameStore.create(folder.newFile(), cache, COLUMNS, ROWS, KEYFRAME_INTERVAL);
+        for (MapFrame frame : frames) {
+            store.append(frame);
+        }
+        store.markComplete();
+        return store;
+    }
+
+    @Test
+    public void readsFramesInOrder() throws IOException {
+        MapFrame[] frames = TestFrames.video(COLUMNS, ROWS, 11, 0.3, 1L);
+        FrameCache cache = new FrameCache(4 * FRAME_BYTES);
+        EncodedFrameStore store = spool(cache, frames);
+        try {
+            assertEquals(frames.length, store.getFrameCount());
+            assertTrue(store.isComplete());
+            for (int f = 0; f < frames.length; f++) {
+                TestFrames.assertStoreEquals(frames, store, f);
+            }
+            // Counted once per frame, not once per tile
+            assertEquals(0, cache.getHits());
+            assertEquals(frames.length, cache.getMisses());
+
+            TestFrames.assertStoreEquals(frames, store, frames.length - 2);
+            assertEquals(1, cache.getHits());
+            assertEquals(frames.length, cache.getMisses());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void readsFramesOutOfOrderWithSmallCache() throws IOException {
+        MapFrame[] frames = TestFrames.video(COLUMNS, ROWS, 17, 0.5, 2L);
+        // Every lookup but the last evicts, so most frames are decoded from their keyframe
+        FrameCache cache = new FrameCache(FRAME_BYTES);
+        EncodedFrameStore store = spool(cache, frames);
+        try {
+            Random random = new Random(3L);
+            for (int i = 0; i < 60; i++) {
+                TestFrames.assertStoreEquals(frames, store, random.nextInt(frames.length));
+            }
+            assertEquals(1, cache.getFrameCount());
+            assertTrue(cache.getEvictions() > 0);
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void readsWhileAppending() throws IOException {
+        MapFrame[] frames = TestFrames.video(COLUMNS, ROWS, 6, 0.5, 4L);
+        EncodedFrameStore store = EncodedFrameStore.create(folder.newFile(), new FrameCache(16 * FRAME_BYTES),
+                                                           COLUMNS, ROWS, KEYFRAME_INTERVAL);
+        try {
+            for (int f = 0; f < frames.length; f++) {
+                store.append(frames[f]);
+                assertFalse(store.isComplete());
+                TestFrames.assertStoreEquals(frames, store, f);
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void readsAfterAppendingThreadIsInterrupted() throws Exception {
+        MapFrame[] frames = TestFrames.video(COLUMNS, ROWS, 8, 0.5, 5L);
+        EncodedFrameStore store = EncodedFrameStore.create(folder.newFile(), new FrameCache(FRAME_BYTES),
+                                                           COLUMNS, ROWS, KEYFRAME_INTERVAL);
+        try {
+            for (int f = 0; f < 4; f++) {
+                store.append(frames[f]);
+            }
+
+            // Like a cancelled job: the worker is interrupted while it is still appending
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread worker = new Thread(() -> {
+                Thread.currentThread().interrupt();
+                try {
+                    for (int f = 4; f < frames.length; f++) {
+                        store.append(frames[f]);
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            worker.start();
+            worker.join();
+
+            assertNull(failure.get());
+            assertEquals(frames.length, store.getFrameCount());
+            for (int f = 0; f < frames.length; f++) {
+                TestFrames.assertStoreEquals(frames, store, f);
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void measuresRecordsWhileAppendingGrowsOffsets() throws Exception {
+        MapFrame[] frames = TestFrames.video(COLUMNS, ROWS, 8, 0.5, 9L);
+        EncodedFrameStore store = EncodedFrameStore.create(folder.newFile(), new FrameCache(FRAME_BYTES),
+                                                           COLUMNS, ROWS, KEYFRAME_INTERVAL);
+        try {
+            // Enough frames to grow the offset table several times while it is being read
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread worker = new Thread(() -> {
+                try {
+                    for (int f = 0; f < 1000; f++) {
+                        store.append(frames[f % frames.length]);
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            worker.start();
+            long last = 0;
+            while (worker.isAlive()) {
+                long bytes = store.getRecordBytes();
+                assertTrue(bytes >= last);
+                last = bytes;
+            }
+            worker.join();
+
+            assertNull(failure.get());
+            assertEquals(1000, store.getFrameCount());
+            assertEquals(store.getRecordOffset(1000), store.getRecordBytes());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void closeDeletesSpoolAndDropsCachedFrames() throws IOException {
+        MapFrame[] frames = TestFrames.video(COLUMNS, ROWS, 3, 0.5, 6L);
+        FrameCache cache = new FrameCache(16 * FRAME_BYTES);
+        EncodedFrameStore store = spool(cache, frames);
+        File file = folder.getRoot().listFiles()[0];
+        TestFrames.assertStoreEquals(frames, store, 2);
+        assertTrue(cache.getFrameCount() > 0);
+
+        store.close();
+        assertFalse(file.exists());
+        assertEquals(0, cache.getFrameCount());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void cacheRoundTrip() throws IOException {
+        MapFrame[] frames = TestFrames.video(COLUMNS, ROWS, 10, 0.4, 7L);
+        VideoData videoData = new VideoData("test", "http://localhost/test.mp4", COLUMNS, ROWS, 20);
+        VideoCache videoCache = new VideoCache(folder.newFolder("cache"), Logger.getAnonymousLogger());
+        FrameCache cache = new FrameCache(4 * FRAME_BYTES);
+
+        EncodedFrameStore spool = spool(cache, frames);
+        try {
+            videoCache.save("entry", videoData, spool, 42L);
+        } finally {
+            spool.close();
+        }
+
+        EncodedFrameStore loaded = videoCache.load("entry", videoData, 42L, cache);
+        assertNotNull(loaded);
+        try {
+            assertEquals(frames.length, loaded.getFrameCount());
+            assertEquals(KEYFRAME_INTERVAL, loaded.getKeyframeInterval());
+            for (int f = frames.length - 1; f >= 0; f--) {
+                TestFrames.assertStoreEquals(frames, loaded, f);
+            }
+        } finally {
+            loaded.close();
+        }
+        assertTrue("Loading must leave the entry in place", videoCache.getFile("entry").isFile());
+
+        assertNull(videoCache.load("entry", videoData, 43L, cache));
+    }
+
+    @Test
+    public void truncatedCacheEntryIsIgnored() throws IOException {
+        MapFrame[] frames = TestFrames.video(COLUMNS, ROWS, 6, 0.4, 8L);
+        VideoData videoData = new VideoData("test", "http://localhost/test.mp4", COLUMNS, ROWS, 20);
+        VideoCache videoCache = new VideoCache(folder.newFolder("cache"), Logger.getAnonymousLogger());
+        FrameCache cache = new FrameCache(4 * FRAME_BYTES);
+
+        EncodedFrameStore spool = spool(cache, frames);
+        try {
+            videoCache.save("entry", videoData, spool, 42L);
+        } finally {
+            spool.close();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(videoCache.getFile("entry"), "rw")) {
+            file.setLength(file.length() - 20);
+        }
+
+        assertNull(videoCache.load("entry", videoData, 42L, cache));
+    }
+}
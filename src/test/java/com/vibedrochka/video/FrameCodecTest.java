@@ -0,0 +1,131 @@
+package com.vibedrochka.video;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class FrameCodecTest {
+
+    private static final int COLUMNS = 3;
+    private static final int ROWS = 2;
+
+    private FrameCodec codec;
+
+    @Before
+    public void setUp() {
+        codec = new FrameCodec(COLUMNS, ROWS);
+    }
+
+    @After
+    public void tearDown() {
+        codec.close();
+    }
+
+    @Test
+    public void decodesWhatWasEncoded() throws IOException {
+        MapFrame[] frames = TestFrames.video(COLUMNS, ROWS, 12, 0.4, 1L);
+        int keyframeInterval = 5;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long written = 0;
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (int f = 0; f < frames.length; f++) {
+                written += codec.encode(frames[f], f % keyframeInterval == 0 ? null : frames[f - 1], out);
+            }
+        }
+        assertEquals(bytes.size(), written);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        MapFrame decoded = null;
+        for (int f = 0; f < frames.length; f++) {
+            decoded = codec.decode(in, f % keyframeInterval == 0 ? null : decoded);
+            TestFrames.assertFrameEquals("Frame " + f, frames[f], decoded);
+        }
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void interFrameSharesUnchangedTiles() throws IOException {
+        MapFrame[] frames = TestFrames.video(COLUMNS, ROWS, 2, 0.0, 2L);
+        byte[][] tiles = new byte[COLUMNS * ROWS][];
+        for (int t = 0; t < tiles.length; t++) {
+            tiles[t] = frames[0].getTile(t);
+        }
+        tiles[4] = frames[0].getTile(4).clone();
+        tiles[4][100] ^= 1;
+        MapFrame changed = new MapFrame(COLUMNS, ROWS, tiles);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            codec.encode(frames[0], null, out);
+            codec.encode(changed, frames[0], out);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        MapFrame keyframe = codec.decode(in, null);
+        MapFrame decoded = codec.decode(in, keyframe);
+        TestFrames.assertFrameEquals("Inter-frame", changed, decoded);
+        assertSame(keyframe.getTile(0), decoded.getTile(0));
+    }
+
+    @Test
+    public void skipMeasuresRecords() throws IOException {
+        MapFrame[] frames = TestFrames.video(COLUMNS, ROWS, 4, 0.5, 3L);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long[] lengths = new long[frames.length];
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (int f = 0; f < frames.length; f++) {
+                lengths[f] = codec.encode(frames[f], f == 0 ? null : frames[f - 1], out);
+            }
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int f = 0; f < frames.length; f++) {
+            assertEquals("Record " + f, lengths[f], FrameCodec.skip(in, COLUMNS * ROWS));
+        }
+    }
+
+    @Test
+    public void rejectsTruncatedRecord() throws IOException {
+        MapFrame frame = TestFrames.video(COLUMNS, ROWS, 1, 0.0, 4L)[0];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            codec.encode(frame, null, out);
+        }
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 10);
+
+        try {
+            codec.decode(new DataInputStream(new ByteArrayInputStream(truncated)), null);
+            fail("Decoded a truncated record");
+        } catch (IOException expected) {
+            // Either the record or the deflated data ran out
+        }
+    }
+
+    @Test
+    public void rejectsInterFrameWithoutPrevious() throws IOException {
+        MapFrame[] frames = TestFrames.video(COLUMNS, ROWS, 2, 0.5, 5L);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            codec.encode(frames[1], frames[0], out);
+        }
+
+        try {
+            codec.decode(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), null);
+            fail("Decoded an inter-frame without the frame before it");
+        } catch (IOException expected) {
+            // The record needs the frame before it
+        }
+    }
+}
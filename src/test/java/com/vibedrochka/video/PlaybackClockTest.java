@@ -0,0 +1,86 @@
+package com.vibedrochka.video;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class PlaybackClockTest {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * Calls {@link PlaybackClock#advance(long)} once per tick for one second of on-time ticks
+     */
+    private static PlaybackClock playOneSecond(int framerate) {
+        PlaybackClock clock = new PlaybackClock(framerate);
+        clock.start(0);
+        for (int tick = 0; tick < 20; tick++) {
+            clock.advance(tick * TICK);
+        }
+        return clock;
+    }
+
+    @Test
+    public void highFramerateOnTimeDropsNothing() {
+        PlaybackClock clock = playOneSecond(60);
+        assertEquals(20, clock.getPresentedFrames());
+        assertEquals(0, clock.getDroppedFrames());
+        assertEquals(0, clock.getDuplicatedFrames());
+    }
+
+    @Test
+    public void lowFramerateOnTimeDuplicatesNothing() {
+        for (int framerate : new int[] {7, 10, 15, 20, 24, 30}) {
+            PlaybackClock clock = playOneSecond(framerate);
+            assertEquals(framerate + " fps", Math.min(framerate, 20), clock.getPresentedFrames());
+            assertEquals(framerate + " fps", 0, clock.getDroppedFrames());
+            assertEquals(framerate + " fps", 0, clock.getDuplicatedFrames());
+        }
+    }
+
+    @Test
+    public void lateTickDropsTheFramesOfMissedTicks() {
+        PlaybackClock clock = new PlaybackClock(60);
+        clock.start(0);
+        clock.advance(0);
+        clock.advance(TICK);
+        // Two ticks missed: an on-time server would have shown frames 6 and 9
+        assertEquals(12, clock.advance(4 * TICK));
+        assertEquals(2, clock.getDroppedFrames());
+    }
+
+    @Test
+    public void lateTickAtLowFramerate() {
+        PlaybackClock clock = new PlaybackClock(10);
+        clock.start(0);
+        clock.advance(0);
+        assertEquals(2, clock.advance(4 * TICK));
+        assertEquals(1, clock.getDroppedFrames());
+    }
+
+    @Test
+    public void ticksBackToBackDuplicate() {
+        PlaybackClock clock = new PlaybackClock(20);
+        clock.start(0);
+        clock.advance(0);
+        clock.advance(TICK / 10);
+        assertEquals(1, clock.getDuplicatedFrames());
+    }
+
+    @Test
+    public void pauseNeitherDropsNorDuplicates() {
+        PlaybackClock clock = new PlaybackClock(60);
+        clock.start(0);
+        clock.advance(0);
+        clock.pause(TICK);
+        for (int tick = 1; tick < 10; tick++) {
+            clock.advance(tick * TICK);
+        }
+        clock.resume(100 * TICK);
+        assertEquals(6, clock.advance(101 * TICK));
+        assertEquals(0, clock.getDroppedFrames());
+        assertEquals(0, clock.getDuplicatedFrames());
+    }
+}
@@ -0,0 +1,71 @@
+package com.vibedrochka.video;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Synthetic videos for the frame storage tests
+ */
+final class TestFrames {
+
+    private TestFrames() {
+    }
+
+    /**
+     * Generates frames in which roughly {@code changeRate} of the tiles change from one frame to the next
+     * @param seed Seed for the pixel contents, so failures can be reproduced
+     */
+    static MapFrame[] video(int columns, int rows, int frameCount, double changeRate, long seed) {
+        Random random = new Random(seed);
+        int tileCount = columns * rows;
+        MapFrame[] frames = new MapFrame[frameCount];
+        byte[][] tiles = new byte[tileCount][];
+        for (int f = 0; f < frameCount; f++) {
+            byte[][] next = new byte[tileCount][];
+            for (int t = 0; t < tileCount; t++) {
+                if (f == 0 || random.nextDouble() < changeRate) {
+                    next[t] = tile(random);
+                } else {
+                    next[t] = tiles[t];
+                }
+            }
+            tiles = next;
+            frames[f] = new MapFrame(columns, rows, tiles);
+        }
+        return frames;
+    }
+
+    /**
+     * A tile of a few flat areas and some noise, like a quantized picture
+     */
+    private static byte[] tile(Random random) {
+        byte[] tile = new byte[MapFrame.TILE_PIXELS];
+        byte color = (byte) (4 + random.nextInt(200));
+        for (int p = 0; p < tile.length; p++) {
+            if (random.nextInt(64) == 0) {
+                color = (byte) (4 + random.nextInt(200));
+            }
+            tile[p] = random.nextInt(16) == 0 ? (byte) (4 + random.nextInt(200)) : color;
+        }
+        return tile;
+    }
+
+    static void assertFrameEquals(String message, MapFrame expected, MapFrame actual) {
+        assertEquals(message, expected.getTileCount(), actual.getTileCount());
+        for (int t = 0; t < expected.getTileCount(); t++) {
+            assertEquals(message + ", hash of tile " + t, expected.getTileHash(t), actual.getTileHash(t));
+            assertArrayEquals(message + ", tile " + t, expected.getTile(t), actual.getTile(t));
+        }
+    }
+
+    static void assertStoreEquals(MapFrame[] expected, FrameStore store, int frame) {
+        byte[] tile = new byte[MapFrame.TILE_PIXELS];
+        for (int t = 0; t < expected[frame].getTileCount(); t++) {
+            assertEquals("Hash of frame " + frame + ", tile " + t, expected[frame].getTileHash(t), store.getTileHash(frame, t));
+            store.readTile(frame, t, tile);
+            assertArrayEquals("Frame " + frame + ", tile " + t, expected[frame].getTile(t), tile);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.vibedrochka.video;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the downloader against a local HTTP server that serves one file, honouring Range and If-Range
+ */
+public class VideoDownloaderTest {
+
+    private static final int SIZE = 200_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private String url;
+    private File directory;
+
+    // What the server does, set by each test before downloading
+    private byte[] content;
+    private final String etag = "\"v1\"";
+    private volatile boolean sendLength = true;
+    // When set, the next response stops halfway until the latch is released
+    private volatile CountDownLatch stall;
+    private final List<Headers> requests = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[SIZE];
+        new Random(1L).nextBytes(content);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/video.mp4", this::serve);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/video.mp4";
+        directory = folder.newFolder("downloads");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        synchronized (requests) {
+            requests.add(exchange.getRequestHeaders());
+        }
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        exchange.getResponseHeaders().add("ETag", etag);
+
+        int start = 0;
+        int status = 200;
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+            if (start >= content.length) {
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            status = 206;
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (content.length - 1) + "/" + content.length);
+        }
+
+        exchange.sendResponseHeaders(status, sendLength ? content.length - start : 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            CountDownLatch latch = stall;
+            stall = null;
+            if (latch != null) {
+                int half = (content.length - start) / 2;
+                out.write(content, start, half);
+                out.flush();
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                start += half;
+            }
+            out.write(content, start, content.length - start);
+        }
+    }
+
+    private VideoDownloader downloader(long maxBytes) {
+        return new VideoDownloader(directory, Logger.getAnonymousLogger(), 5000, 5000, 30_000, maxBytes);
+    }
+
+    private File partFile() {
+        return new File(directory, VideoCache.sha256(url) + ".part");
+    }
+
+    private File validatorFile() {
+        return new File(directory, VideoCache.sha256(url) + ".validator");
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return VideoCache.toHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+
+    private Headers lastRequest() {
+        synchronized (requests) {
+            return requests.get(requests.size() - 1);
+        }
+    }
+
+    @Test
+    public void downloadsAndHashes() throws Exception {
+        VideoDownloader downloader = downloader(SIZE);
+        VideoDownloader.Download download = downloader.acquire(url);
+
+        assertArrayEquals(content, Files.readAllBytes(download.getFile().toPath()));
+        assertEquals(SIZE, download.getSize());
+        assertEquals(sha256(content), download.getContentHash());
+        assertNull(lastRequest().getFirst("Range"));
+        assertFalse(partFile().exists());
+        assertFalse(validatorFile().exists());
+
+        downloader.release(download);
+        assertFalse(download.getFile().exists());
+        assertEquals(0, downloader.getActiveCount());
+    }
+
+    @Test
+    public void resumesPartialFileWithRange() throws Exception {
+        int have = 70_000;
+        Files.write(partFile().toPath(), Arrays.copyOf(content, have));
+        Files.write(validatorFile().toPath(), etag.getBytes(StandardCharsets.UTF_8));
+
+        VideoDownloader downloader = downloader(SIZE);
+        VideoDownloader.Download download = downloader.acquire(url);
+
+        Headers request = lastRequest();
+        assertEquals("bytes=" + have + "-", request.getFirst("Range"));
+        assertEquals(etag, request.getFirst("If-Range"));
+        assertArrayEquals(content, Files.readAllBytes(download.getFile().toPath()));
+        // The hash covers the resumed part as well as the downloaded rest
+        assertEquals(sha256(content), download.getContentHash());
+        assertEquals(SIZE, download.getSize());
+        assertFalse(validatorFile().exists());
+        downloader.release(download);
+    }
+
+    @Test
+    public void startsOverWhenRemoteFileChanged() throws Exception {
+        byte[] stale = new byte[70_000];
+        new Random(2L).nextBytes(stale);
+        Files.write(partFile().toPath(), stale);
+        Files.write(validatorFile().toPath(), "\"v0\"".getBytes(StandardCharsets.UTF_8));
+
+        // If-Range does not match, so the server answers with the whole new file
+        VideoDownloader downloader = downloader(SIZE);
+        VideoDownloader.Download download = downloader.acquire(url);
+
+        assertEquals("\"v0\"", lastRequest().getFirst("If-Range"));
+        assertArrayEquals(content, Files.readAllBytes(download.getFile().toPath()));
+        assertEquals(sha256(content), download.getContentHash());
+        downloader.release(download);
+    }
+
+    @Test
+    public void doesNotResumeWithoutValidator() throws Exception {
+        Files.write(partFile().toPath(), new byte[70_000]);
+
+        VideoDownloader downloader = downloader(SIZE);
+        VideoDownloader.Download download = downloader.acquire(url);
+
+        assertNull(lastRequest().getFirst("Range"));
+        assertArrayEquals(content, Files.readAllBytes(download.getFile().toPath()));
+        downloader.release(download);
+    }
+
+    @Test
+    public void startsOverWhenRangeIsNotSatisfiable() throws Exception {
+        // Longer than the remote file, so the range starts past its end
+        Files.write(partFile().toPath(), new byte[SIZE + 10]);
+        Files.write(validatorFile().toPath(), etag.getBytes(StandardCharsets.UTF_8));
+
+        VideoDownloader downloader = downloader(SIZE + 100);
+        VideoDownloader.Download download = downloader.acquire(url);
+
+        assertNull(lastRequest().getFirst("Range"));
+        assertArrayEquals(content, Files.readAllBytes(download.getFile().toPath()));
+        downloader.release(download);
+    }
+
+    @Test
+    public void waiterTakesOverWhenOwnerIsInterrupted() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        stall = latch;
+        VideoDownloader downloader = downloader(SIZE);
+
+        AtomicReference<Throwable> ownerFailure = new AtomicReference<>();
+        Thread owner = new Thread(() -> {
+            try {
+                downloader.release(downloader.acquire(url));
+            } catch (Throwable e) {
+                ownerFailure.set(e);
+            }
+        });
+        owner.start();
+        while (partFile().length() == 0) {
+            Thread.sleep(10);
+        }
+
+        AtomicReference<VideoDownloader.Download> joined = new AtomicReference<>();
+        AtomicReference<Throwable> joinerFailure = new AtomicReference<>();
+        Thread joiner = new Thread(() -> {
+            try {
+                joined.set(downloader.acquire(url));
+            } catch (Throwable e) {
+                joinerFailure.set(e);
+            }
+        });
+        joiner.start();
+        while (joiner.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+
+        // Like a cancelled processing job: the owner is interrupted while it downloads
+        owner.interrupt();
+        latch.countDown();
+        owner.join();
+        joiner.join();
+
+        assertTrue(String.valueOf(ownerFailure.get()), ownerFailure.get() instanceof InterruptedIOException);
+        assertNull(joinerFailure.get());
+        VideoDownloader.Download download = joined.get();
+        assertNotNull(download);
+        assertArrayEquals(content, Files.readAllBytes(download.getFile().toPath()));
+        assertEquals(sha256(content), download.getContentHash());
+        // The joiner resumed what the owner had downloaded
+        assertNotNull(lastRequest().getFirst("Range"));
+
+        downloader.release(download);
+        assertEquals(0, downloader.getActiveCount());
+    }
+
+    @Test
+    public void rejectsDeclaredSizeOverLimit() {
+        VideoDownloader downloader = downloader(SIZE - 1);
+        try {
+            downloader.acquire(url);
+            fail("Accepted a file over the size limit");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("too large"));
+        }
+        assertEquals(0, downloader.getActiveCount());
+    }
+
+    @Test
+    public void abortsStreamOverLimit() {
+        // Without a Content-Length the limit can only be enforced while streaming
+        sendLength = false;
+        VideoDownloader downloader = downloader(SIZE / 2);
+        try {
+            downloader.acquire(url);
+            fail("Accepted a file over the size limit");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("size limit"));
+        }
+        assertFalse("An oversized download must not be resumed", partFile().exists());
+        assertFalse(validatorFile().exists());
+        assertEquals(0, downloader.getActiveCount());
+    }
+
+    @Test
+    public void rejectsHttpErrors() {
+        String missing = "http://127.0.0.1:" + server.getAddress().getPort() + "/missing.mp4";
+        VideoDownloader downloader = downloader(SIZE);
+        try {
+            downloader.acquire(missing);
+            fail("Accepted a 404");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("404"));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.vibedrochka.video;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ViewerStateTest {
+
+    // 4x2 wall: tiles 0, 2, 5 and 7 are one checkerboard half, 1, 3, 4 and 6 the other
+    private static final int COLUMNS = 4;
+    private static final int TILES = 8;
+
+    private static FramePipeline.PreparedFrame frame(long hash) {
+        long[] hashes = new long[TILES];
+        Arrays.fill(hashes, hash);
+        return new FramePipeline.PreparedFrame(0, new byte[TILES][], hashes, new int[0]);
+    }
+
+    private static int[] select(ViewerState viewer, int budget, long tick) {
+        int[] selected = new int[TILES];
+        int count = viewer.selectTiles(budget, new double[TILES], tick, selected);
+        viewer.markRefreshed(tick);
+        int[] picked = Arrays.copyOf(selected, count);
+        Arrays.sort(picked);
+        return picked;
+    }
+
+    @Test
+    public void sendsEverythingWithinBudget() {
+        ViewerState viewer = new ViewerState(null, null, COLUMNS, TILES);
+        viewer.markAll(frame(1), 0);
+        assertTrue(viewer.fitsBudget(TILES));
+        assertFalse(viewer.fitsBudget(TILES - 1));
+        assertEquals(TILES, select(viewer, TILES, 0).length);
+    }
+
+    @Test
+    public void alternatesHalves() {
+        ViewerState viewer = new ViewerState(null, null, COLUMNS, TILES);
+        viewer.setQuality(1, true, 0);
+        viewer.markAll(frame(1), 0);
+        assertFalse(viewer.fitsBudget(TILES));
+
+        // Asking does not change which half is next
+        assertEquals(4, viewer.getSendableCount());
+        assertEquals(4, viewer.getSendableCount());
+
+        assertArrayEquals(new int[] {0, 2, 5, 7}, select(viewer, TILES, 0));
+        viewer.markAll(frame(2), 2);
+        assertArrayEquals(new int[] {1, 3, 4, 6}, select(viewer, TILES, 2));
+        assertArrayEquals(new int[] {0, 2, 5, 7}, select(viewer, TILES, 4));
+    }
+
+    @Test
+    public void emptyHalfIsSkipped() {
+        ViewerState viewer = new ViewerState(null, null, COLUMNS, TILES);
+        viewer.setQuality(1, true, 0);
+        viewer.markChanged(new int[] {1, 6}, frame(1), 0);
+
+        // Tiles 1 and 6 are both in the half that is not due
+        assertEquals(2, viewer.getSendableCount());
+        assertEquals(2, viewer.getSendableCount());
+        assertArrayEquals(new int[] {1, 6}, select(viewer, TILES, 0));
+
+        // The half that was skipped is due next
+        viewer.markAll(frame(2), 2);
+        assertArrayEquals(new int[] {0, 2, 5, 7}, select(viewer, TILES, 2));
+    }
+}